@@ -153,6 +153,7 @@ public class AmqpConnection extends AbstractAmqpResource<JmsConnectionInfo, Conn
                 Exception remoteError = getRemoteError();
                 if (openRequest != null) {
                     openRequest.onFailure(remoteError);
+                    openRequest = null;
                 } else {
                     provider.fireProviderException(remoteError);
                 }
@@ -25,11 +25,13 @@ import io.hawtjms.jms.meta.JmsMessageId;
 import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderListener;
+import io.hawtjms.util.MemoryGovernor;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.jms.JMSException;
 
@@ -67,11 +69,29 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
     protected static final Symbol JMS_NO_LOCAL_SYMBOL = Symbol.valueOf("no-local");
     protected static final Symbol JMS_SELECTOR_SYMBOL = Symbol.valueOf("jms-selector");
 
+    // Adaptive prefetch samples the consumption rate at most this often, and ignores
+    // samples spanning long idle periods that would otherwise collapse the window.
+    private static final long ADAPTIVE_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long ADAPTIVE_IDLE_NANOS = ADAPTIVE_SAMPLE_NANOS * 10;
+
     protected final AmqpSession session;
     protected final InboundTransformer inboundTransformer =
         new JMSMappingInboundTransformer(AmqpJMSVendor.INSTANCE);;
     protected final Map<JmsMessageId, Delivery> delivered = new LinkedHashMap<JmsMessageId, Delivery>();
 
+    // Credit earned by acknowledged messages that has not yet been granted to the remote.
+    private int pendingCredit;
+
+    // The prefetch window currently granted, which only moves when adaptive prefetch is on.
+    private int creditWindow;
+    private long sampleStart;
+    private int sampleAcks;
+    private double ackRate;
+
+    // Encoded bytes of messages received but not yet acknowledged, and their average size.
+    private long bufferedBytes;
+    private long averageMessageSize;
+
     public AmqpConsumer(AmqpSession session, JmsConsumerInfo info) {
         super(info);
         this.session = session;
@@ -84,7 +104,10 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
      * Starts the consumer by setting the link credit to the given prefetch value.
      */
     public void start(AsyncResult<Void> request) {
-        this.endpoint.flow(info.getPrefetchSize());
+        this.creditWindow = info.getPrefetchSize();
+        this.sampleStart = System.nanoTime();
+        this.pendingCredit = info.getPrefetchSize();
+        grantPendingCredit();
         request.onSuccess();
     }
 
@@ -214,15 +237,17 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
                 }
             }
             delivered.put(messageId, delivery);
+            releaseBuffered(envelope);
             if (info.getPrefetchSize() > 0) {
-                endpoint.flow(1);
+                replenishCredit(1);
             }
         } else if (ackType.equals(ACK_TYPE.CONSUMED)) {
             // A Consumer may not always send a delivered ACK so we need to check to
             // ensure we don't add to much credit to the link.
             if (delivered.remove(messageId) == null) {
+                releaseBuffered(envelope);
                 if (info.getPrefetchSize() > 0) {
-                    endpoint.flow(1);
+                    replenishCredit(1);
                 }
             }
             LOG.debug("Consumed Ack of message: {}", messageId);
@@ -235,6 +260,9 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
             delivery.disposition(disposition);
             delivery.settle();
         } else if (ackType.equals(ACK_TYPE.POISONED)) {
+            if (!delivered.containsKey(messageId)) {
+                releaseBuffered(envelope);
+            }
             deliveryFailed(delivery, false);
         } else {
             LOG.warn("Unsupporeted Ack Type for message: {}", messageId);
@@ -271,6 +299,7 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
 
     protected void processDelivery(Delivery incoming) {
         EncodedMessage encoded = readIncomingMessage(incoming);
+        int size = encoded.getLength();
         JmsMessage message = null;
         try {
             message = (JmsMessage) inboundTransformer.transform(encoded);
@@ -299,10 +328,14 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
         envelope.setMessage(message);
         envelope.setConsumerId(info.getConsumerId());
         envelope.setProviderHint(incoming);
+        envelope.setEncodedSize(size);
 
         // Store reference to envelope in delivery context for recovery
         incoming.setContext(envelope);
 
+        bufferedBytes += size;
+        averageMessageSize = averageMessageSize == 0 ? size : (averageMessageSize * 7 + size) / 8;
+
         deliver(envelope);
     }
 
@@ -344,8 +377,120 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
         incoming.disposition(disposition);
         incoming.settle();
         if (expandCredit) {
-            endpoint.flow(1);
+            replenishCredit(1);
+        }
+    }
+
+    /**
+     * Records credit earned by a message leaving the prefetch window and grants the total
+     * owed in a single flow once the credit still outstanding on the link has fallen to the
+     * refill threshold configured for this consumer.  A threshold of 100 percent grants the
+     * credit immediately, which results in one flow per acknowledged message.
+     *
+     * @param credit
+     *        the amount of credit earned.
+     */
+    protected void replenishCredit(int credit) {
+        pendingCredit += credit;
+
+        if (info.isAdaptivePrefetch()) {
+            adaptCreditWindow(credit);
+        }
+
+        int threshold = (int) (((long) creditWindow * info.getCreditRefillThreshold()) / 100);
+        if (endpoint.getCredit() <= threshold || info.getPrefetchSize() == 0) {
+            grantPendingCredit();
+        }
+    }
+
+    /**
+     * Grants as much of the pending credit as the prefetch byte limit allows.  When a limit
+     * is set the credit on the link is capped at the number of average sized messages that
+     * still fit in the budget, the rest stays pending until acknowledgments free up space.
+     * One message is always allowed once nothing is buffered or outstanding so a message
+     * larger than the whole budget can still be received.  The same rule applies to all
+     * credit while the connection's memory governor is throttling.
+     */
+    private void grantPendingCredit() {
+        int grant = pendingCredit;
+
+        long limit = info.getMaxPrefetchBytes();
+        if (limit > 0 && info.getPrefetchSize() > 0) {
+            long allowed = 1;
+            if (averageMessageSize > 0) {
+                allowed = Math.max(0, limit - bufferedBytes) / averageMessageSize;
+            }
+            allowed -= endpoint.getCredit();
+            if (allowed <= 0 && bufferedBytes == 0 && endpoint.getCredit() == 0) {
+                allowed = 1;
+            }
+            grant = (int) Math.max(0, Math.min(grant, allowed));
         }
+
+        // While the client as a whole is short of memory only a consumer that holds
+        // nothing may take one more message, so that none of them stalls outright.
+        MemoryGovernor.Account account = session.getProvider().getMemoryAccount();
+        if (grant > 0 && account != null && account.isThrottling() && info.getPrefetchSize() > 0) {
+            grant = bufferedBytes == 0 && endpoint.getCredit() == 0 ? 1 : 0;
+        }
+
+        if (grant > 0) {
+            LOG.trace("{} granting {} credit, outstanding {}", new Object[] { this, grant, endpoint.getCredit() });
+            endpoint.flow(grant);
+            pendingCredit -= grant;
+        }
+    }
+
+    /**
+     * Removes an acknowledged message from the count of bytes held by this consumer.
+     */
+    private void releaseBuffered(JmsInboundMessageDispatch envelope) {
+        bufferedBytes = Math.max(0, bufferedBytes - envelope.getEncodedSize());
+    }
+
+    /**
+     * Resizes the prefetch window so that it holds about as many messages as the application
+     * consumes within the target latency.  By Little's law the time a message waits in the
+     * local queue is the backlog divided by the consumption rate, so a window sized this way
+     * keeps the residency time near the target.  The window at most doubles or halves per
+     * sample and stays between one and the max prefetch size.  Growth is granted along with
+     * the next refill, shrinking withholds earned credit until the window fits.
+     *
+     * @param acked
+     *        the number of messages consumed since the last call.
+     */
+    private void adaptCreditWindow(int acked) {
+        sampleAcks += acked;
+
+        long now = System.nanoTime();
+        long elapsed = now - sampleStart;
+        if (elapsed < ADAPTIVE_SAMPLE_NANOS) {
+            return;
+        }
+
+        if (elapsed < ADAPTIVE_IDLE_NANOS) {
+            double rate = sampleAcks / (elapsed / 1000000.0);
+            ackRate = ackRate == 0 ? rate : (ackRate * 0.75) + (rate * 0.25);
+
+            long target = (long) Math.ceil(ackRate * info.getAdaptiveTargetLatency());
+            int window = (int) Math.min(target, info.getMaxPrefetchSize());
+            window = Math.max(window, Math.max(1, creditWindow / 2));
+            window = (int) Math.min(window, Math.max(1, (long) creditWindow * 2));
+
+            if (window != creditWindow) {
+                if (LOG.isTraceEnabled()) {
+                    int backlog = creditWindow - endpoint.getCredit() - pendingCredit;
+                    LOG.trace("{} prefetch {} -> {} at {} msg/ms, residency about {} ms", new Object[] {
+                              this, creditWindow, window, ackRate, backlog / ackRate });
+                }
+                pendingCredit += window - creditWindow;
+                creditWindow = window;
+                info.setCurrentPrefetchSize(window);
+            }
+        }
+
+        sampleStart = now;
+        sampleAcks = 0;
     }
 
     protected void deliver(JmsInboundMessageDispatch envelope) {
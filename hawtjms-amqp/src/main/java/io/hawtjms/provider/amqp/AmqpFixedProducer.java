@@ -22,12 +22,13 @@ import io.hawtjms.jms.message.JmsOutboundMessageDispatch;
 import io.hawtjms.jms.meta.JmsProducerInfo;
 import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.util.IOExceptionSupport;
+import io.hawtjms.util.MemoryGovernor;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
@@ -58,7 +59,8 @@ public class AmqpFixedProducer extends AmqpProducer {
     private static final Logger LOG = LoggerFactory.getLogger(AmqpFixedProducer.class);
 
     private final AmqpTransferTagGenerator tagGenerator = new AmqpTransferTagGenerator(true);
-    private final Set<Delivery> pending = new LinkedHashSet<Delivery>();
+    // Unsettled deliveries and their encoded size in bytes.
+    private final Map<Delivery, Integer> pending = new LinkedHashMap<Delivery, Integer>();
 
     private final OutboundTransformer outboundTransformer = new AutoOutboundTransformer(AmqpJMSVendor.INSTANCE);
     private final String MESSAGE_FORMAT_KEY = outboundTransformer.getPrefixVendor() + "MESSAGE_FORMAT";
@@ -102,8 +104,10 @@ public class AmqpFixedProducer extends AmqpProducer {
             throw IOExceptionSupport.create(e);
         }
 
+        int size = 0;
         if (amqp != null && amqp.getLength() > 0) {
             sendBuffer = new Buffer(amqp.getArray(), amqp.getArrayOffset(), amqp.getLength());
+            size = amqp.getLength();
         }
 
         while (sendBuffer != null) {
@@ -112,7 +116,11 @@ public class AmqpFixedProducer extends AmqpProducer {
                 sendBuffer.moveHead(sent);
                 if (sendBuffer.length == 0) {
                     endpoint.advance();
-                    pending.add(delivery);
+                    pending.put(delivery, size);
+                    MemoryGovernor.Account account = session.getProvider().getMemoryAccount();
+                    if (account != null) {
+                        account.reserve(size);
+                    }
                     sendBuffer = null;
                 }
             } else {
@@ -125,7 +133,7 @@ public class AmqpFixedProducer extends AmqpProducer {
     public void processUpdates() {
         List<Delivery> toRemove = new ArrayList<Delivery>();
 
-        for (Delivery delivery : pending) {
+        for (Delivery delivery : pending.keySet()) {
             DeliveryState state = delivery.getRemoteState();
             if (state == null) {
                 continue;
@@ -135,7 +143,15 @@ public class AmqpFixedProducer extends AmqpProducer {
             AsyncResult<Void> request = (AsyncResult<Void>) delivery.getContext();
 
             if (state instanceof TransactionalState) {
-                LOG.info("State of delivery is Transacted: {}", state);
+                // The send is enlisted in the transaction, its outcome takes effect on discharge.
+                LOG.trace("State of delivery is Transacted: {}", state);
+                toRemove.add(delivery);
+                tagGenerator.returnTag(delivery.getTag());
+                if (((TransactionalState) state).getOutcome() instanceof Rejected) {
+                    request.onFailure(getRemoteError());
+                } else {
+                    request.onSuccess(null);
+                }
             } else if (state instanceof Accepted) {
                 toRemove.add(delivery);
                 tagGenerator.returnTag(delivery.getTag());
@@ -150,7 +166,13 @@ public class AmqpFixedProducer extends AmqpProducer {
             }
         }
 
-        pending.removeAll(toRemove);
+        MemoryGovernor.Account account = session.getProvider().getMemoryAccount();
+        for (Delivery delivery : toRemove) {
+            Integer size = pending.remove(delivery);
+            if (account != null && size != null) {
+                account.release(size);
+            }
+        }
 
         // TODO - Check for and handle endpoint detached state.
     }
@@ -178,9 +200,38 @@ public class AmqpFixedProducer extends AmqpProducer {
 
     @Override
     protected void doClose() {
+        failPending(new IOException("Producer closed before the send was settled"));
         this.session.addPedingLinkClose(this);
     }
 
+    @Override
+    public void failed(Exception cause) {
+        failPending(cause);
+        super.failed(cause);
+    }
+
+    /*
+     * Fails every send that is still waiting on the remote peer and gives back the
+     * bytes they held, nothing settles them once the link is closing or has failed.
+     */
+    private void failPending(Exception cause) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        MemoryGovernor.Account account = session.getProvider().getMemoryAccount();
+        for (Map.Entry<Delivery, Integer> entry : pending.entrySet()) {
+            if (account != null) {
+                account.release(entry.getValue());
+            }
+
+            @SuppressWarnings("unchecked")
+            AsyncResult<Void> request = (AsyncResult<Void>) entry.getKey().getContext();
+            request.onFailure(cause);
+        }
+        pending.clear();
+    }
+
     @Override
     public Link getProtonLink() {
         return this.endpoint;
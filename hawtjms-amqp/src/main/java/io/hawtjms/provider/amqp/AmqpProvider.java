@@ -36,12 +36,15 @@ import io.hawtjms.provider.AbstractAsyncProvider;
 import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderRequest;
+import io.hawtjms.transports.NioTcpTransport;
+import io.hawtjms.transports.NioTransportListener;
 import io.hawtjms.transports.TcpTransport;
-import io.hawtjms.transports.TransportListener;
+import io.netty.buffer.ByteBuf;
 
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -71,7 +74,7 @@ import org.vertx.java.core.buffer.Buffer;
  * All work within this Provider is serialized to a single Thread.  Any asynchronous exceptions
  * will be dispatched from that Thread and all in-bound requests are handled there as well.
  */
-public class AmqpProvider extends AbstractAsyncProvider implements TransportListener {
+public class AmqpProvider extends AbstractAsyncProvider implements NioTransportListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(AmqpProvider.class);
 
@@ -82,6 +85,8 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     private io.hawtjms.transports.Transport transport;
     private boolean traceFrames;
     private boolean traceBytes;
+    // Serializer thread only, set when an NIO read was held back for lack of input space.
+    private boolean inputStalled;
     private long connectTimeout = JmsConnectionInfo.DEFAULT_CONNECT_TIMEOUT;
     private long closeTimeout = JmsConnectionInfo.DEFAULT_CLOSE_TIMEOUT;
     private long requestTimeout = JmsConnectionInfo.DEFAULT_REQUEST_TIMEOUT;
@@ -117,12 +122,15 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
         checkClosed();
 
         transport = createTransport(getRemoteURI());
+        configureTransport(transport);
         transport.connect();
+        bindSerializer(transport);
     }
 
     @Override
     public void close() {
         if (closed.compareAndSet(false, true)) {
+            resumeSends();
             final ProviderRequest<Void> request = new ProviderRequest<Void>();
             serializer.execute(new Runnable() {
 
@@ -203,6 +211,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
                             connectTimeout = connectionInfo.getConnectTimeout();
                             sendTimeout = connectionInfo.getSendTimeout();
                             requestTimeout = connectionInfo.getRequestTimeout();
+                            bindMemoryAccount(transport, connectionInfo.getMemoryAccount());
 
                             Connection protonConnection = engineFactory.createConnection();
                             protonTransport.bind(protonConnection);
@@ -320,6 +329,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void send(final JmsOutboundMessageDispatch envelope, final AsyncResult<Void> request) throws IOException {
         checkClosed();
+        awaitSendsResumed(sendTimeout);
         serializer.execute(new Runnable() {
 
             @Override
@@ -376,18 +386,34 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
                 try {
                     checkClosed();
 
-                    JmsConsumerId consumerId = envelope.getConsumerId();
-                    AmqpConsumer consumer = null;
+                    AmqpConsumer consumer = lookupConsumer(envelope.getConsumerId());
+                    consumer.acknowledge(envelope, ackType);
 
-                    if (consumerId.getProviderHint() instanceof AmqpConsumer) {
-                        consumer = (AmqpConsumer) consumerId.getProviderHint();
-                    } else {
-                        AmqpSession session = connection.getSession(consumerId.getParentId());
-                        consumer = session.getConsumer(consumerId);
-                    }
+                    pumpToProtonTransport();
+                    request.onSuccess();
+                } catch (Exception error) {
+                    request.onFailure(error);
+                }
+            }
+        });
+    }
 
-                    consumer.acknowledge(envelope, ackType);
+    @Override
+    public void acknowledge(final List<JmsInboundMessageDispatch> envelopes, final ACK_TYPE ackType, final AsyncResult<Void> request) throws IOException {
+        checkClosed();
+        serializer.execute(new Runnable() {
 
+            @Override
+            public void run() {
+                try {
+                    checkClosed();
+
+                    for (JmsInboundMessageDispatch envelope : envelopes) {
+                        AmqpConsumer consumer = lookupConsumer(envelope.getConsumerId());
+                        consumer.acknowledge(envelope, ackType);
+                    }
+
+                    // All settlements for the batch go out together.
                     pumpToProtonTransport();
                     request.onSuccess();
                 } catch (Exception error) {
@@ -397,6 +423,15 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
         });
     }
 
+    private AmqpConsumer lookupConsumer(JmsConsumerId consumerId) {
+        if (consumerId.getProviderHint() instanceof AmqpConsumer) {
+            return (AmqpConsumer) consumerId.getProviderHint();
+        }
+
+        AmqpSession session = connection.getSession(consumerId.getParentId());
+        return session.getConsumer(consumerId);
+    }
+
     @Override
     public void commit(final JmsSessionId sessionId, final AsyncResult<Void> request) throws IOException {
         checkClosed();
@@ -533,31 +568,101 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void onData(Buffer input) {
 
-        // Create our own copy since we will process later.
-        final ByteBuffer source = ByteBuffer.wrap(input.getBytes());
+        // The event loop may release or reuse the received ByteBuf once this handler
+        // returns, we retain it until processed so that the view taken here stays valid.
+        // The only copy made is into the proton input buffer.
+        final ByteBuf received = input.getByteBuf().retain();
+        final ByteBuffer source = received.nioBuffer();
 
+        try {
+            serializer.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    LOG.trace("Received from Broker {} bytes:", source.remaining());
+
+                    try {
+                        do {
+                            ByteBuffer buffer = protonTransport.getInputBuffer();
+                            int limit = Math.min(buffer.remaining(), source.remaining());
+                            ByteBuffer duplicate = source.duplicate();
+                            duplicate.limit(source.position() + limit);
+                            buffer.put(duplicate);
+                            protonTransport.processInput();
+                            source.position(source.position() + limit);
+                        } while (source.hasRemaining());
+                    } finally {
+                        received.release();
+                    }
+
+                    // Process the state changes from the latest data and then answer back
+                    // any pending updates to the Broker.
+                    processUpdates();
+                    pumpToProtonTransport();
+                }
+            });
+        } catch (RuntimeException e) {
+            received.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Callback from the NIO Transport indicating that data can be read, the data is read
+     * on the serializer thread directly into the proton Transport's input buffer.
+     */
+    @Override
+    public void onReadReady() {
         serializer.execute(new Runnable() {
 
             @Override
             public void run() {
-                LOG.trace("Received from Broker {} bytes:", source.remaining());
-
-                do {
-                    ByteBuffer buffer = protonTransport.getInputBuffer();
-                    int limit = Math.min(buffer.remaining(), source.remaining());
-                    ByteBuffer duplicate = source.duplicate();
-                    duplicate.limit(source.position() + limit);
-                    buffer.put(duplicate);
+                readFromNioTransport();
+            }
+        });
+    }
+
+    /**
+     * Reads from the NIO Transport until the socket has no more data.  When proton has no
+     * input space left the read interest is not restored, a read of zero bytes would then
+     * not mean the socket is empty and the selector would keep waking up for the data that
+     * is still waiting.  The read is resumed from the serializer idle callback once proton
+     * has freed some space.
+     */
+    private void readFromNioTransport() {
+        NioTcpTransport source = (NioTcpTransport) transport;
+
+        try {
+            int bytesRead = 0;
+            inputStalled = false;
+            do {
+                ByteBuffer buffer = protonTransport.getInputBuffer();
+                if (!buffer.hasRemaining()) {
+                    LOG.trace("No space in proton input buffer, holding off further reads");
+                    inputStalled = true;
+                    break;
+                }
+
+                bytesRead = source.read(buffer);
+                if (bytesRead > 0) {
+                    LOG.trace("Received from Broker {} bytes:", bytesRead);
                     protonTransport.processInput();
-                    source.position(source.position() + limit);
-                } while (source.hasRemaining());
+                }
+            } while (bytesRead > 0);
 
-                // Process the state changes from the latest data and then answer back
-                // any pending updates to the Broker.
-                processUpdates();
-                pumpToProtonTransport();
+            if (bytesRead == 0 && !inputStalled) {
+                source.readComplete();
             }
-        });
+
+            // Process the state changes from the latest data and then answer back
+            // any pending updates to the Broker.
+            processUpdates();
+            pumpToProtonTransport();
+        } catch (IOException e) {
+            if (!closed.get()) {
+                fireProviderException(e);
+            }
+        }
     }
 
     /**
@@ -582,6 +687,25 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
         }
     }
 
+    /**
+     * Callback method for the Transport to report that its write queue has filled, new
+     * send requests are held back on the sending thread until the queue drains.
+     */
+    @Override
+    public void onTransportWriteQueueFull() {
+        LOG.debug("Transport write queue full, pausing sends");
+        pauseSends();
+    }
+
+    /**
+     * Callback method for the Transport to report that its write queue has drained.
+     */
+    @Override
+    public void onTransportWriteQueueDrained() {
+        LOG.debug("Transport write queue drained, resuming sends");
+        resumeSends();
+    }
+
     /**
      * Callback method for the Transport to report that the underlying connection
      * has closed.  When called this method will queue a new task that will check for
@@ -603,6 +727,21 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
         }
     }
 
+    @Override
+    protected void onSerializerIdle() {
+        if (transport != null && !closed.get()) {
+            try {
+                transport.flush();
+            } catch (IOException e) {
+                fireProviderException(e);
+            }
+
+            if (inputStalled && protonTransport.getInputBuffer().hasRemaining()) {
+                readFromNioTransport();
+            }
+        }
+    }
+
     private void processUpdates() {
         connection.processUpdates();
         // TODO - Handle exceptions and fire back to the client when they happen.
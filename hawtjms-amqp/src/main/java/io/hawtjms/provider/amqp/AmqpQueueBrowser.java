@@ -85,6 +85,15 @@ public class AmqpQueueBrowser extends AmqpConsumer {
         }
     }
 
+    /**
+     * The browser's end of browse detection works from the credit on the link so credit
+     * is always returned as soon as it is earned rather than batched.
+     */
+    @Override
+    protected void replenishCredit(int credit) {
+        this.endpoint.flow(credit);
+    }
+
     @Override
     protected void configureSource(Source source) {
         if (info.isBrowser()) {
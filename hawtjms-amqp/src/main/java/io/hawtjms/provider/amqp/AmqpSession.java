@@ -66,7 +66,10 @@ public class AmqpSession extends AbstractAmqpResource<JmsSessionInfo, Session> {
     @Override
     public void opened() {
         if (this.txContext != null) {
-            this.txContext.open(openRequest);
+            // The transaction context now owns the request and completes it once its link opens.
+            AsyncResult<Void> request = this.openRequest;
+            this.openRequest = null;
+            this.txContext.open(request);
         } else {
             super.opened();
         }
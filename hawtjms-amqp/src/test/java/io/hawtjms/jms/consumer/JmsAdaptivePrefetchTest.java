@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.jms.JmsMessageConsumer;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.junit.Test;
+
+/**
+ * Test that an adaptive prefetch window follows the rate of consumption.
+ */
+public class JmsAdaptivePrefetchTest extends AmqpTestSupport {
+
+    @Test(timeout = 60000)
+    public void testFixedPrefetchIsReported() throws Exception {
+        connection = createAmqpConnection();
+        ((JmsConnection) connection).getPrefetchPolicy().setQueuePrefetch(100);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        assertEquals(100, ((JmsMessageConsumer) consumer).getCurrentPrefetchSize());
+    }
+
+    @Test(timeout = 60000)
+    public void testSlowConsumerShrinksPrefetch() throws Exception {
+        sendToAmqQueue(200);
+
+        connection = createAmqpConnection();
+        ((JmsConnection) connection).getPrefetchPolicy().setQueuePrefetch(1000);
+        ((JmsConnection) connection).getPrefetchPolicy().setAdaptive(true);
+        ((JmsConnection) connection).getPrefetchPolicy().setAdaptiveTargetLatency(10);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        for (int i = 0; i < 100; ++i) {
+            assertNotNull(consumer.receive(5000));
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+
+        int current = ((JmsMessageConsumer) consumer).getCurrentPrefetchSize();
+        assertTrue("Prefetch should have shrunk: " + current, current < 1000);
+    }
+}
@@ -22,6 +22,8 @@ import static org.junit.Assert.assertTrue;
 import io.hawtjms.test.support.AmqpTestSupport;
 import io.hawtjms.test.support.Wait;
 
+import java.net.URI;
+
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
@@ -97,4 +99,152 @@ public class JmsAutoAckTest extends AmqpTestSupport {
             }
         }));
     }
+
+    @Test(timeout = 60000)
+    public void testBatchedAcksAreAllConsumed() throws Exception {
+        connection = createAmqpConnection(new URI(getBrokerAmqpConnectionURI() + "?jms.ackBatchSize=10"));
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        sendToAmqQueue(25);
+
+        for (int i = 0; i < 25; ++i) {
+            assertNotNull("Failed to receive message: " + i, consumer.receive(2000));
+        }
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue("Queued messages not consumed.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == 0;
+            }
+        }));
+    }
+
+    @Test(timeout = 60000)
+    public void testStrictAutoAckConsumesBeforeReceiveReturns() throws Exception {
+        connection = createAmqpConnection(new URI(getBrokerAmqpConnectionURI() + "?jms.strictAutoAck=true"));
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        sendToAmqQueue(1);
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertEquals(1, proxy.getQueueSize());
+
+        assertNotNull("Failed to receive any message.", consumer.receive(2000));
+
+        assertTrue("Queued message not consumed.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == 0;
+            }
+        }));
+    }
+
+    @Test(timeout = 60000)
+    public void testDupsOkAcksAreConsumed() throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        Session session = connection.createSession(false, Session.DUPS_OK_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        sendToAmqQueue(100);
+
+        for (int i = 0; i < 100; ++i) {
+            assertNotNull("Failed to receive message: " + i, consumer.receive(2000));
+        }
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue("Queued messages not consumed.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == 0;
+            }
+        }));
+    }
+
+    @Test(timeout = 60000)
+    public void testBatchedAcksAreSentOnConnectionClose() throws Exception {
+        connection = createAmqpConnection(new URI(getBrokerAmqpConnectionURI() +
+            "?jms.ackBatchSize=100&jms.ackBatchTimeout=60000"));
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        sendToAmqQueue(20);
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue("Messages not prefetched.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getInFlightCount() == 20;
+            }
+        }));
+
+        for (int i = 0; i < 5; ++i) {
+            assertNotNull("Failed to receive message: " + i, consumer.receive(2000));
+        }
+
+        // Closing the Connection rather than the Session must still ack what was consumed.
+        connection.close();
+
+        assertTrue("Consumed messages were not acked.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == 15;
+            }
+        }));
+        assertEquals(5, proxy.getDequeueCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testBatchedAcksAreSentWhenReceivingStops() throws Exception {
+        connection = createAmqpConnection(new URI(getBrokerAmqpConnectionURI() +
+            "?jms.ackBatchSize=100&jms.ackBatchTimeout=100"));
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        sendToAmqQueue(20);
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue("Messages not prefetched.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getInFlightCount() == 20;
+            }
+        }));
+
+        for (int i = 0; i < 5; ++i) {
+            assertNotNull("Failed to receive message: " + i, consumer.receive(2000));
+        }
+
+        // The rest stay prefetched, the timer must send the pending acks on its own.
+        assertTrue("Consumed messages were not acked.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getDequeueCount() == 5;
+            }
+        }, 5000));
+    }
 }
@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsMessageConsumer;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.Wait;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.junit.Test;
+
+/**
+ * Test the batch receive extension of the JmsMessageConsumer.
+ */
+public class JmsBatchReceiveTest extends AmqpTestSupport {
+
+    private static final int MSG_COUNT = 100;
+
+    @Test(timeout = 60000)
+    public void testBatchReceiveReturnsMessagesInOrder() throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        sendMessages(connection, queue, MSG_COUNT);
+
+        JmsMessageConsumer consumer = (JmsMessageConsumer) session.createConsumer(queue);
+        List<Message> received = receiveAll(consumer, MSG_COUNT, 16);
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            assertEquals("TextMessage: " + i, ((TextMessage) received.get(i)).getText());
+        }
+
+        assertQueueDrained();
+    }
+
+    @Test(timeout = 60000)
+    public void testBatchReceiveTimesOutWhenEmpty() throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        JmsMessageConsumer consumer = (JmsMessageConsumer) session.createConsumer(queue);
+
+        long startTime = System.currentTimeMillis();
+        assertTrue(consumer.receive(10, 100).isEmpty());
+        assertTrue(System.currentTimeMillis() - startTime >= 90);
+        assertTrue(consumer.receiveNoWait(10).isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void testBatchReceiveWithClientAcknowledge() throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        Session session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        sendMessages(connection, queue, MSG_COUNT);
+
+        JmsMessageConsumer consumer = (JmsMessageConsumer) session.createConsumer(queue);
+        List<Message> received = receiveAll(consumer, MSG_COUNT, 32);
+
+        // Nothing is consumed until the application acknowledges.
+        QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertEquals(MSG_COUNT, proxy.getQueueSize());
+
+        received.get(received.size() - 1).acknowledge();
+        assertQueueDrained();
+    }
+
+    @Test(timeout = 60000)
+    public void testBatchReceiveInTransaction() throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+        Queue queue = session.createQueue(name.getMethodName());
+        sendMessages(connection, queue, MSG_COUNT);
+
+        JmsMessageConsumer consumer = (JmsMessageConsumer) session.createConsumer(queue);
+        receiveAll(consumer, MSG_COUNT, 32);
+
+        QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertEquals(MSG_COUNT, proxy.getQueueSize());
+
+        session.commit();
+        assertQueueDrained();
+    }
+
+    private List<Message> receiveAll(JmsMessageConsumer consumer, int count, int batchSize) throws Exception {
+        List<Message> received = new ArrayList<Message>(count);
+        while (received.size() < count) {
+            List<Message> batch = consumer.receive(batchSize, 5000);
+            assertTrue("Timed out after " + received.size() + " messages", !batch.isEmpty());
+            assertTrue(batch.size() <= batchSize);
+            received.addAll(batch);
+        }
+        assertEquals(count, received.size());
+        return received;
+    }
+
+    private void assertQueueDrained() throws Exception {
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue("Queued messages not consumed.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == 0;
+            }
+        }));
+    }
+}
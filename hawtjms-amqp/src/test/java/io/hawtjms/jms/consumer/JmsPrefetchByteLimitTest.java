@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.Wait;
+
+import javax.jms.BytesMessage;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.junit.Test;
+
+/**
+ * Test that the prefetch byte limit bounds what a consumer holds without stalling it.
+ */
+public class JmsPrefetchByteLimitTest extends AmqpTestSupport {
+
+    private static final int PAYLOAD_SIZE = 64 * 1024;
+
+    @Test(timeout = 60000)
+    public void testLargeMessagesAreHeldToByteLimit() throws Exception {
+        connection = createAmqpConnection();
+        ((JmsConnection) connection).getPrefetchPolicy().setQueuePrefetch(1000);
+        ((JmsConnection) connection).getPrefetchPolicy().setMaxPrefetchBytes(4 * PAYLOAD_SIZE);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        sendPayloads(session, queue, 20, PAYLOAD_SIZE);
+
+        MessageConsumer consumer = session.createConsumer(queue);
+        assertNotNull(consumer.receive(5000));
+
+        // Most of the messages should still be on the broker rather than in the consumer.
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue(Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getInFlightCount() > 0;
+            }
+        }));
+        assertTrue("Too many messages dispatched: " + proxy.getInFlightCount(), proxy.getInFlightCount() <= 10);
+
+        for (int i = 1; i < 20; ++i) {
+            assertNotNull("Missing message: " + i, consumer.receive(5000));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testMessageLargerThanLimitIsReceived() throws Exception {
+        connection = createAmqpConnection();
+        ((JmsConnection) connection).getPrefetchPolicy().setMaxPrefetchBytes(1024);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        sendPayloads(session, queue, 3, PAYLOAD_SIZE);
+
+        MessageConsumer consumer = session.createConsumer(queue);
+        for (int i = 0; i < 3; ++i) {
+            Message message = consumer.receive(5000);
+            assertNotNull("Missing message: " + i, message);
+            assertEquals(PAYLOAD_SIZE, ((BytesMessage) message).getBodyLength());
+        }
+    }
+
+    private void sendPayloads(Session session, Queue queue, int count, int size) throws Exception {
+        MessageProducer producer = session.createProducer(queue);
+        byte[] payload = new byte[size];
+        for (int i = 0; i < count; ++i) {
+            BytesMessage message = session.createBytesMessage();
+            message.writeBytes(payload);
+            producer.send(message);
+        }
+        producer.close();
+    }
+}
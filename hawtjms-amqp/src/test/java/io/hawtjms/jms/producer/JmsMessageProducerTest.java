@@ -19,9 +19,21 @@ package io.hawtjms.jms.producer;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.hawtjms.jms.JmsCompletionListener;
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.jms.JmsMessageProducer;
 import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.LatencyProxy;
+import io.hawtjms.test.support.Wait;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
 import javax.jms.JMSSecurityException;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
@@ -145,6 +157,104 @@ public class JmsMessageProducerTest extends AmqpTestSupport {
         assertEquals(0, message.getJMSTimestamp());
     }
 
+    @Test(timeout = 60000)
+    public void testAsyncSendNotifiesCompletionListener() throws Exception {
+        connection = createAmqpConnection();
+        assertNotNull(connection);
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        JmsMessageProducer producer = (JmsMessageProducer) session.createProducer(queue);
+        producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+
+        final int MSG_COUNT = 10;
+        final CountDownLatch completed = new CountDownLatch(MSG_COUNT);
+        final AtomicInteger failed = new AtomicInteger();
+
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            producer.send(session.createMessage(), new JmsCompletionListener() {
+
+                @Override
+                public void onCompletion(Message message) {
+                    completed.countDown();
+                }
+
+                @Override
+                public void onException(Message message, Exception exception) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(0, failed.get());
+
+        QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertEquals(MSG_COUNT, proxy.getQueueSize());
+    }
+
+    @Test(timeout = 60000)
+    public void testTransactedSendNotifiesCompletionListener() throws Exception {
+        connection = createAmqpConnection();
+        assertNotNull(connection);
+
+        Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+        Queue queue = session.createQueue(name.getMethodName());
+        JmsMessageProducer producer = (JmsMessageProducer) session.createProducer(queue);
+
+        final int MSG_COUNT = 10;
+        final CountDownLatch completed = new CountDownLatch(MSG_COUNT);
+        final AtomicInteger failed = new AtomicInteger();
+
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            producer.send(session.createMessage(), new JmsCompletionListener() {
+
+                @Override
+                public void onCompletion(Message message) {
+                    completed.countDown();
+                }
+
+                @Override
+                public void onException(Message message, Exception exception) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(0, failed.get());
+
+        session.commit();
+
+        QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertEquals(MSG_COUNT, proxy.getQueueSize());
+    }
+
+    @Test(timeout = 60000)
+    public void testNonPersistentSendsDoNotBlock() throws Exception {
+        connection = createAmqpConnection();
+        assertNotNull(connection);
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageProducer producer = session.createProducer(queue);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        final int MSG_COUNT = 100;
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            producer.send(session.createMessage());
+        }
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue("Broker did not receive all messages", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == MSG_COUNT;
+            }
+        }));
+    }
+
     private String createLargeString(int sizeInBytes) {
         byte[] base = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 0 };
         StringBuilder builder = new StringBuilder();
@@ -191,4 +301,28 @@ public class JmsMessageProducerTest extends AmqpTestSupport {
         Queue queue = session.createQueue("USERS." + name.getMethodName());
         session.createProducer(queue);
     }
+
+    @Test(timeout = 60000)
+    public void testSendFailsWhenSendTimeoutExpires() throws Exception {
+        LatencyProxy latency = new LatencyProxy(getBrokerAmqpConnectionURI(), 1000);
+        try {
+            connection = createAmqpConnection(new URI(latency.getProxyURI() + "?jms.sendTimeout=100"));
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue(name.getMethodName());
+            MessageProducer producer = session.createProducer(queue);
+            producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+
+            try {
+                producer.send(session.createTextMessage("timeout"));
+                fail("Send should have failed once the send timeout expired");
+            } catch (JMSException ex) {
+                LOG.debug("Caught expected exception: {}", ex.getMessage());
+            }
+
+            assertEquals(1, ((JmsConnection) connection).getTimedOutRequestCount());
+            connection.close();
+        } finally {
+            latency.close();
+        }
+    }
 }
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.usecases;
+
+import static org.junit.Assert.assertEquals;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.transports.SharedVertx;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures thread usage and connect latency as the number of open connections grows.
+ */
+public class JmsConnectionScalingTimedTest extends AmqpTestSupport {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(JmsConnectionScalingTimedTest.class);
+
+    @Test(timeout = 60 * 1000)
+    public void testOneConnection() throws Exception {
+        doTestConnectionScaling(1);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testOneHundredConnections() throws Exception {
+        doTestConnectionScaling(100);
+    }
+
+    @Test(timeout = 5 * 60 * 1000)
+    public void testOneThousandConnections() throws Exception {
+        doTestConnectionScaling(1000);
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testEventLoopSizeFromURI() throws Exception {
+        URI brokerURI = new URI(getBrokerAmqpConnectionURI() + "?transport.eventLoopThreads=2");
+        Connection connection = createAmqpConnection(brokerURI);
+        connection.start();
+        assertEquals(2, SharedVertx.getEventLoopThreads());
+        connection.close();
+        assertEquals(0, SharedVertx.getReferenceCount());
+    }
+
+    private void doTestConnectionScaling(int count) throws Exception {
+        int startThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        List<Connection> connections = new ArrayList<Connection>(count);
+
+        long totalTime = 0;
+        long maxTime = 0;
+        for (int i = 0; i < count; ++i) {
+            long startTime = System.nanoTime();
+            Connection connection = createAmqpConnection();
+            connection.start();
+            long elapsed = System.nanoTime() - startTime;
+            totalTime += elapsed;
+            maxTime = Math.max(maxTime, elapsed);
+            connections.add(connection);
+        }
+
+        int openThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        assertEquals(count, SharedVertx.getReferenceCount());
+
+        LOG.info("{} connections: avg connect {} us, max connect {} us, threads before {} after {} " +
+                 "event loop threads {}", new Object[] { count,
+                 TimeUnit.NANOSECONDS.toMicros(totalTime / count), TimeUnit.NANOSECONDS.toMicros(maxTime),
+                 startThreads, openThreads, SharedVertx.getEventLoopThreads() });
+
+        for (Connection connection : connections) {
+            connection.close();
+        }
+
+        assertEquals(0, SharedVertx.getReferenceCount());
+        assertEquals(0, SharedVertx.getEventLoopThreads());
+    }
+}
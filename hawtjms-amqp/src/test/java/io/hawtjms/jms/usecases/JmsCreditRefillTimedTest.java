@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.usecases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import javax.jms.Connection;
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures receive throughput for several credit refill thresholds.  A threshold of
+ * 100 percent grants one credit per acknowledged message, which was the behavior
+ * before credit was batched.
+ */
+public class JmsCreditRefillTimedTest extends AmqpTestSupport {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(JmsCreditRefillTimedTest.class);
+
+    private static final int MESSAGE_COUNT = 10000;
+    private static final int PREFETCH = 1000;
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testRefillThreshold100() throws Exception {
+        doTestCreditRefill(100);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testRefillThreshold50() throws Exception {
+        doTestCreditRefill(50);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testRefillThreshold10() throws Exception {
+        doTestCreditRefill(10);
+    }
+
+    protected void doTestCreditRefill(int threshold) throws Exception {
+        sendToAmqQueue(MESSAGE_COUNT);
+
+        Connection connection = createAmqpConnection();
+        ((JmsConnection) connection).getPrefetchPolicy().setQueuePrefetch(PREFETCH);
+        ((JmsConnection) connection).getPrefetchPolicy().setCreditRefillThreshold(threshold);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < MESSAGE_COUNT; ++i) {
+            assertNotNull(consumer.receive(5000));
+        }
+        long receiveTime = System.nanoTime() - startTime;
+
+        // Each grant tops the window back up to the prefetch size, so every flow
+        // covers the part of the window that was allowed to drain.
+        int perFlow = Math.max(1, PREFETCH - (PREFETCH * threshold) / 100);
+        LOG.info("threshold {}%: {} messages in {} ms, {} msg/s, about {} flow frames per message", new Object[] {
+                 threshold, MESSAGE_COUNT, receiveTime / 1000000,
+                 (MESSAGE_COUNT * 1000000000L) / receiveTime, 1.0 / perFlow });
+
+        consumer.close();
+        QueueViewMBean queueView = getProxyToQueue(name.getMethodName());
+        assertEquals(0, queueView.getQueueSize());
+        connection.close();
+    }
+}
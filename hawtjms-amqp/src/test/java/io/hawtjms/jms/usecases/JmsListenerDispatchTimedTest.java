@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.usecases;
+
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures MessageListener throughput for two consumers sharing a Session, and how evenly
+ * the Session's dispatch thread is shared between them, for several dispatch batch sizes.
+ */
+public class JmsListenerDispatchTimedTest extends AmqpTestSupport {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(JmsListenerDispatchTimedTest.class);
+
+    private static final int MESSAGE_COUNT = 10000;
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testListenerDispatchDefaultBatchSize() throws Exception {
+        doTestListenerDispatch(getBrokerAmqpConnectionURI());
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testListenerDispatchBatchSizeOne() throws Exception {
+        doTestListenerDispatch(new URI(getBrokerAmqpConnectionURI() + "?jms.dispatchBatchSize=1"));
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testListenerDispatchUnboundedBatchSize() throws Exception {
+        doTestListenerDispatch(new URI(getBrokerAmqpConnectionURI() + "?jms.dispatchBatchSize=" + Integer.MAX_VALUE));
+    }
+
+    protected void doTestListenerDispatch(URI brokerURI) throws Exception {
+        Connection connection = createAmqpConnection(brokerURI);
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue first = session.createQueue(name.getMethodName() + ".1");
+        Queue second = session.createQueue(name.getMethodName() + ".2");
+
+        fillQueue(connection, first);
+        fillQueue(connection, second);
+
+        final CountDownLatch done = new CountDownLatch(2 * MESSAGE_COUNT);
+        final AtomicInteger firstCount = new AtomicInteger();
+        final AtomicInteger secondCount = new AtomicInteger();
+        final AtomicInteger secondAtFirstHalf = new AtomicInteger(-1);
+
+        MessageConsumer firstConsumer = session.createConsumer(first);
+        MessageConsumer secondConsumer = session.createConsumer(second);
+        firstConsumer.setMessageListener(new MessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                if (firstCount.incrementAndGet() == MESSAGE_COUNT / 2) {
+                    secondAtFirstHalf.set(secondCount.get());
+                }
+                done.countDown();
+            }
+        });
+        secondConsumer.setMessageListener(new MessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                secondCount.incrementAndGet();
+                done.countDown();
+            }
+        });
+
+        long startTime = System.nanoTime();
+        connection.start();
+        assertTrue("Did not receive all messages", done.await(60, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - startTime;
+
+        LOG.info("{}: {} msg/s, second consumer had {} messages when the first reached {}", new Object[] {
+                 name.getMethodName(), (2 * MESSAGE_COUNT * 1000000000L) / elapsed,
+                 secondAtFirstHalf.get(), MESSAGE_COUNT / 2 });
+
+        connection.close();
+    }
+
+    private void fillQueue(Connection connection, Queue queue) throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = session.createProducer(queue);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+        for (int i = 0; i < MESSAGE_COUNT; ++i) {
+            producer.send(session.createTextMessage("message " + i));
+        }
+        session.close();
+    }
+}
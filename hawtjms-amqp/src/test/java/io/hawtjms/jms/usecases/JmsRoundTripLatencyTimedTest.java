@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.usecases;
+
+import static org.junit.Assert.assertNotNull;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares send to receive latency of the Vert.x and java.nio based transports, with the
+ * Provider work done on its own serializer thread or on the Transport's event loop.
+ */
+public class JmsRoundTripLatencyTimedTest extends AmqpTestSupport {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(JmsRoundTripLatencyTimedTest.class);
+
+    private static final int MESSAGE_COUNT = 5000;
+    private static final int WARMUP_COUNT = 500;
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testVertxTransportLatency() throws Exception {
+        doTestRoundTripLatency(getBrokerAmqpConnectionURI());
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testNioTransportLatency() throws Exception {
+        URI brokerURI = getBrokerAmqpConnectionURI();
+        doTestRoundTripLatency(new URI("amqp+nio://" + brokerURI.getHost() + ":" + brokerURI.getPort()));
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testVertxTransportLatencyOnEventLoop() throws Exception {
+        doTestRoundTripLatency(new URI(getBrokerAmqpConnectionURI() + "?serializer.type=transport"));
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testNioTransportLatencyOnEventLoop() throws Exception {
+        URI brokerURI = getBrokerAmqpConnectionURI();
+        doTestRoundTripLatency(new URI("amqp+nio://" + brokerURI.getHost() + ":" + brokerURI.getPort() +
+                                       "?serializer.type=transport"));
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testFailoverLatencyOnEventLoop() throws Exception {
+        doTestRoundTripLatency(new URI("failover:(" + getBrokerAmqpConnectionURI() + ")" +
+                                       "?directDispatch=true&nested.serializer.type=transport"));
+    }
+
+    protected void doTestRoundTripLatency(URI brokerURI) throws Exception {
+        Connection connection = createAmqpConnection(brokerURI);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+        MessageProducer producer = session.createProducer(queue);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+        TextMessage message = session.createTextMessage("latency");
+
+        long[] samples = new long[MESSAGE_COUNT];
+        for (int i = 0; i < WARMUP_COUNT + MESSAGE_COUNT; ++i) {
+            long startTime = System.nanoTime();
+            producer.send(message);
+            assertNotNull(consumer.receive(5000));
+            if (i >= WARMUP_COUNT) {
+                samples[i - WARMUP_COUNT] = System.nanoTime() - startTime;
+            }
+        }
+
+        Arrays.sort(samples);
+        LOG.info("{}: {} round trips, p50 {} us, p99 {} us, max {} us", new Object[] {
+                 name.getMethodName(), MESSAGE_COUNT, samples[MESSAGE_COUNT / 2] / 1000,
+                 samples[(MESSAGE_COUNT * 99) / 100] / 1000, samples[MESSAGE_COUNT - 1] / 1000 });
+
+        connection.close();
+    }
+}
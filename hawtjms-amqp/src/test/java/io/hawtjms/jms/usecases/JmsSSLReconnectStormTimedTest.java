@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.usecases;
+
+import static org.junit.Assert.assertEquals;
+import io.hawtjms.jms.JmsConnectionFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.jms.Connection;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.TransportConnector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures how long it takes a burst of SSL connections to all reconnect at once.
+ */
+public class JmsSSLReconnectStormTimedTest {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(JmsSSLReconnectStormTimedTest.class);
+
+    public static final String PASSWORD = "password";
+    public static final String KEYSTORE = "src/test/resources/keystore";
+    public static final String KEYSTORE_TYPE = "jks";
+
+    private static final int CONNECTION_COUNT = 100;
+
+    private BrokerService brokerService;
+    private URI connectionURI;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("javax.net.ssl.trustStore", KEYSTORE);
+        System.setProperty("javax.net.ssl.trustStorePassword", PASSWORD);
+        System.setProperty("javax.net.ssl.trustStoreType", KEYSTORE_TYPE);
+        System.setProperty("javax.net.ssl.keyStore", KEYSTORE);
+        System.setProperty("javax.net.ssl.keyStorePassword", PASSWORD);
+        System.setProperty("javax.net.ssl.keyStoreType", KEYSTORE_TYPE);
+
+        brokerService = new BrokerService();
+        brokerService.setPersistent(false);
+        brokerService.setAdvisorySupport(false);
+        brokerService.setDeleteAllMessagesOnStartup(true);
+        brokerService.setUseJmx(false);
+
+        TransportConnector connector = brokerService.addConnector("amqp+ssl://localhost:0");
+        brokerService.start();
+        brokerService.waitUntilStarted();
+
+        connectionURI = connector.getPublishableConnectURI();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        brokerService.stop();
+        brokerService.waitUntilStopped();
+    }
+
+    @Test(timeout = 5 * 60 * 1000)
+    public void testReconnectStorm() throws Exception {
+        final JmsConnectionFactory factory =
+            new JmsConnectionFactory("amqps://" + connectionURI.getHost() + ":" + connectionURI.getPort());
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONNECTION_COUNT);
+        try {
+            // The first storm primes the shared SSL client, the second reflects reconnects.
+            for (int round = 1; round <= 2; ++round) {
+                List<Future<Connection>> results = new ArrayList<Future<Connection>>(CONNECTION_COUNT);
+
+                long startTime = System.nanoTime();
+                for (int i = 0; i < CONNECTION_COUNT; ++i) {
+                    results.add(executor.submit(new Callable<Connection>() {
+
+                        @Override
+                        public Connection call() throws Exception {
+                            Connection connection = factory.createConnection();
+                            connection.start();
+                            return connection;
+                        }
+                    }));
+                }
+
+                List<Connection> connections = new ArrayList<Connection>(CONNECTION_COUNT);
+                for (Future<Connection> result : results) {
+                    connections.add(result.get());
+                }
+                long elapsed = System.nanoTime() - startTime;
+
+                assertEquals(CONNECTION_COUNT, connections.size());
+                LOG.info("Round {}: {} SSL connections established in {} ms", new Object[] {
+                         round, CONNECTION_COUNT, elapsed / 1000000 });
+
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
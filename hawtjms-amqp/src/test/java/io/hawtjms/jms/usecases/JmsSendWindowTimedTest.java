@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.usecases;
+
+import static org.junit.Assert.assertEquals;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.LatencyProxy;
+
+import java.net.URI;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures persistent send throughput for several in-flight send window sizes over
+ * a connection with a simulated round trip time.
+ */
+public class JmsSendWindowTimedTest extends AmqpTestSupport {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(JmsSendWindowTimedTest.class);
+
+    private static final int MESSAGE_COUNT = 500;
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testWindow1With1msRTT() throws Exception {
+        doTestSendWindow(1, 1);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testWindow16With1msRTT() throws Exception {
+        doTestSendWindow(16, 1);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testWindow256With1msRTT() throws Exception {
+        doTestSendWindow(256, 1);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testWindow1With10msRTT() throws Exception {
+        doTestSendWindow(1, 10);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testWindow16With10msRTT() throws Exception {
+        doTestSendWindow(16, 10);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testWindow256With10msRTT() throws Exception {
+        doTestSendWindow(256, 10);
+    }
+
+    protected void doTestSendWindow(int window, long roundTripMillis) throws Exception {
+        LatencyProxy proxy = new LatencyProxy(getBrokerAmqpConnectionURI(), roundTripMillis);
+        try {
+            URI brokerURI = new URI(proxy.getProxyURI() + "?jms.maxInFlightSends=" + window);
+            Connection connection = createAmqpConnection(brokerURI);
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue(name.getMethodName());
+            MessageProducer producer = session.createProducer(queue);
+            producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+            TextMessage message = session.createTextMessage("window");
+
+            long startTime = System.nanoTime();
+            for (int i = 0; i < MESSAGE_COUNT; ++i) {
+                producer.send(message);
+            }
+
+            // Closing the producer waits for the remaining sends to be settled.
+            producer.close();
+            long sendTime = System.nanoTime() - startTime;
+
+            LOG.info("window {} at {} ms RTT: {} persistent sends in {} ms, {} msg/s", new Object[] {
+                     window, roundTripMillis, MESSAGE_COUNT, sendTime / 1000000,
+                     (MESSAGE_COUNT * 1000000000L) / sendTime });
+
+            QueueViewMBean queueView = getProxyToQueue(name.getMethodName());
+            assertEquals(MESSAGE_COUNT, queueView.getQueueSize());
+            connection.close();
+        } finally {
+            proxy.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.usecases;
+
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures thread count, heap usage and listener dispatch latency for a connection with
+ * thousands of Sessions, each with its own dispatch thread or sharing a dispatch pool.
+ */
+public class JmsSessionScalingTimedTest extends AmqpTestSupport {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(JmsSessionScalingTimedTest.class);
+
+    private static final int SESSION_COUNT = 5000;
+    private static final int MESSAGE_COUNT = 10;
+    private static final int POOL_SIZE = 4;
+
+    @Test(timeout = 5 * 60 * 1000)
+    public void testDedicatedDispatchThreads() throws Exception {
+        doTestSessionScaling(getBrokerAmqpConnectionURI());
+    }
+
+    @Test(timeout = 5 * 60 * 1000)
+    public void testSharedDispatchPool() throws Exception {
+        int addedThreads = doTestSessionScaling(new URI(getBrokerAmqpConnectionURI() +
+            "?jms.sharedDispatchPool=true&jms.dispatchPoolSize=" + POOL_SIZE));
+        assertTrue("Too many threads created: " + addedThreads, addedThreads <= POOL_SIZE + 2);
+    }
+
+    protected int doTestSessionScaling(URI brokerURI) throws Exception {
+        Connection connection = createAmqpConnection(brokerURI);
+        connection.start();
+
+        final CountDownLatch done = new CountDownLatch(SESSION_COUNT * MESSAGE_COUNT);
+        final AtomicLong totalLatency = new AtomicLong();
+        final AtomicLong maxLatency = new AtomicLong();
+        MessageListener listener = new MessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                try {
+                    long latency = System.nanoTime() - message.getLongProperty("sentAt");
+                    totalLatency.addAndGet(latency);
+                    long max = maxLatency.get();
+                    while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+                        max = maxLatency.get();
+                    }
+                } catch (JMSException e) {
+                }
+                done.countDown();
+            }
+        };
+
+        Session producerSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Topic topic = producerSession.createTopic(name.getMethodName());
+        MessageProducer producer = producerSession.createProducer(topic);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        int startThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        long startHeap = usedHeap();
+
+        for (int i = 0; i < SESSION_COUNT; ++i) {
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(topic);
+            consumer.setMessageListener(listener);
+        }
+
+        for (int i = 0; i < MESSAGE_COUNT; ++i) {
+            Message message = producerSession.createMessage();
+            message.setLongProperty("sentAt", System.nanoTime());
+            producer.send(message);
+        }
+
+        assertTrue("Did not receive all messages", done.await(4, TimeUnit.MINUTES));
+
+        int addedThreads = ManagementFactory.getThreadMXBean().getThreadCount() - startThreads;
+        long addedHeap = usedHeap() - startHeap;
+        long deliveries = (long) SESSION_COUNT * MESSAGE_COUNT;
+
+        LOG.info("{}: {} sessions, {} threads added, {} KB heap per session, avg dispatch {} us, max dispatch {} us",
+                 new Object[] { name.getMethodName(), SESSION_COUNT, addedThreads, addedHeap / SESSION_COUNT / 1024,
+                 TimeUnit.NANOSECONDS.toMicros(totalLatency.get() / deliveries),
+                 TimeUnit.NANOSECONDS.toMicros(maxLatency.get()) });
+
+        connection.close();
+        return addedThreads;
+    }
+
+    private long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
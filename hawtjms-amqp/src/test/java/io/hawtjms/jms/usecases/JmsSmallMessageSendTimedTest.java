@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.usecases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.Wait;
+
+import java.net.URI;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the rate at which small messages can be written to the broker.
+ */
+public class JmsSmallMessageSendTimedTest extends AmqpTestSupport {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(JmsSmallMessageSendTimedTest.class);
+
+    private static final int MESSAGE_SIZE = 100;
+    private static final int MESSAGE_COUNT = 20000;
+    private static final int WARMUP_COUNT = 2000;
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testSendNonPersistentSmallMessages() throws Exception {
+        doTestSendSmallMessages(getBrokerAmqpConnectionURI(), DeliveryMode.NON_PERSISTENT);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testSendNonPersistentSmallMessagesWithoutWriteBatching() throws Exception {
+        URI brokerURI = new URI(getBrokerAmqpConnectionURI() + "?transport.maxWriteBatchSize=0");
+        doTestSendSmallMessages(brokerURI, DeliveryMode.NON_PERSISTENT);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testSendPersistentSmallMessages() throws Exception {
+        doTestSendSmallMessages(getBrokerAmqpConnectionURI(), DeliveryMode.PERSISTENT);
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testSendPersistentSmallMessagesSpinningForResponse() throws Exception {
+        URI brokerURI = new URI(getBrokerAmqpConnectionURI() + "?jms.requestWaitStrategy=spin_then_park");
+        doTestSendSmallMessages(brokerURI, DeliveryMode.PERSISTENT);
+    }
+
+    protected void doTestSendSmallMessages(URI brokerURI, int deliveryMode) throws Exception {
+        Connection connection = createAmqpConnection(brokerURI);
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageProducer producer = session.createProducer(queue);
+        producer.setDeliveryMode(deliveryMode);
+
+        StringBuilder payload = new StringBuilder(MESSAGE_SIZE);
+        for (int i = 0; i < MESSAGE_SIZE; ++i) {
+            payload.append((char) ('a' + (i % 26)));
+        }
+        TextMessage message = session.createTextMessage(payload.toString());
+
+        for (int i = 0; i < WARMUP_COUNT; ++i) {
+            producer.send(message);
+        }
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < MESSAGE_COUNT; ++i) {
+            producer.send(message);
+        }
+        long sendTime = System.nanoTime() - startTime;
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue("Broker did not receive all messages", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == WARMUP_COUNT + MESSAGE_COUNT;
+            }
+        }));
+        long totalTime = System.nanoTime() - startTime;
+
+        LOG.info("{}: sent {} messages of {} bytes in {} ms, {} msg/s, broker received all after {} ms",
+                 new Object[] { name.getMethodName(), MESSAGE_COUNT, MESSAGE_SIZE, sendTime / 1000000,
+                                (MESSAGE_COUNT * 1000000000L) / sendTime, totalTime / 1000000 });
+
+        assertEquals(WARMUP_COUNT + MESSAGE_COUNT, proxy.getQueueSize());
+        connection.close();
+    }
+}
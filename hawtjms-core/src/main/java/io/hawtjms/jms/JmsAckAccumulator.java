@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms;
+
+import io.hawtjms.jms.message.JmsInboundMessageDispatch;
+import io.hawtjms.provider.AsyncResult;
+import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
+import io.hawtjms.util.HashedWheelTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+
+/**
+ * Collects the consumed acknowledgments of a Session so that they can be handed to the
+ * Provider as a single batch.  A batch is flushed once it reaches the configured size,
+ * when the Session goes idle, or from the shared {@link HashedWheelTimer} once the oldest
+ * pending ack has waited for the batch timeout, so acks are never held for longer than
+ * that even if the application stops receiving.  Flushes never wait for the Provider, a
+ * failed batch is reported to the Connection's ExceptionListener.
+ */
+final class JmsAckAccumulator {
+
+    private final JmsConnection connection;
+    private final int batchSize;
+    private final long batchTimeout;
+
+    private List<JmsInboundMessageDispatch> pending;
+    private HashedWheelTimer timer;
+    private HashedWheelTimer.Timeout flushTimeout;
+    private long batchGeneration;
+    private boolean closed;
+
+    /**
+     * @param connection
+     *        the Connection used to send the acknowledgments.
+     * @param batchSize
+     *        the number of pending acks that triggers a flush.
+     * @param batchTimeout
+     *        the age in milliseconds of the oldest pending ack that triggers a flush,
+     *        zero or less to flush only on size or when the Session goes idle.
+     */
+    public JmsAckAccumulator(JmsConnection connection, int batchSize, long batchTimeout) {
+        this.connection = connection;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchTimeout = batchTimeout;
+        this.pending = new ArrayList<JmsInboundMessageDispatch>(this.batchSize);
+    }
+
+    /**
+     * Adds a consumed acknowledgment to the current batch, flushing it if full.
+     *
+     * @param envelope
+     *        the envelope of the message that has been consumed.
+     *
+     * @throws JMSException if the batch could not be handed to the Provider.
+     */
+    public synchronized void add(JmsInboundMessageDispatch envelope) throws JMSException {
+        pending.add(envelope);
+
+        if (pending.size() >= batchSize) {
+            flush();
+        } else if (pending.size() == 1) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Hands any pending acknowledgments to the Provider.
+     *
+     * @throws JMSException if the batch could not be handed to the Provider.
+     */
+    public synchronized void flush() throws JMSException {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        cancelFlush();
+
+        List<JmsInboundMessageDispatch> batch = pending;
+        pending = new ArrayList<JmsInboundMessageDispatch>(batchSize);
+
+        connection.acknowledge(batch, ACK_TYPE.CONSUMED, new AsyncResult<Void>() {
+
+            private volatile boolean complete;
+
+            @Override
+            public void onFailure(Throwable result) {
+                complete = true;
+                connection.onAsyncException(result);
+            }
+
+            @Override
+            public void onSuccess(Void result) {
+                complete = true;
+            }
+
+            @Override
+            public void onSuccess() {
+                onSuccess(null);
+            }
+
+            @Override
+            public boolean isComplete() {
+                return complete;
+            }
+        });
+    }
+
+    /**
+     * Drops any pending acknowledgments, used when the Session is torn down without
+     * being able to reach the remote peer.
+     */
+    public synchronized void clear() {
+        cancelFlush();
+        pending.clear();
+    }
+
+    /**
+     * Drops any pending acknowledgments and gives back the timer, called once the Session
+     * is shut down.
+     */
+    public synchronized void close() {
+        clear();
+        closed = true;
+        if (timer != null) {
+            HashedWheelTimer.release(timer);
+            timer = null;
+        }
+    }
+
+    /**
+     * @return the number of acknowledgments waiting to be flushed.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /*
+     * Called under lock when a new batch is started, the timeout only flushes the batch
+     * it was scheduled for.
+     */
+    private void scheduleFlush() {
+        if (batchTimeout <= 0 || closed) {
+            return;
+        }
+
+        if (timer == null) {
+            timer = HashedWheelTimer.acquire();
+        }
+
+        final long generation = batchGeneration;
+        try {
+            flushTimeout = timer.newTimeout(new Runnable() {
+
+                @Override
+                public void run() {
+                    flushExpired(generation);
+                }
+            }, batchTimeout, TimeUnit.MILLISECONDS);
+        } catch (IllegalStateException e) {
+            // The shared timer was stopped, the batch is still sent on size or when idle.
+        }
+    }
+
+    private void cancelFlush() {
+        batchGeneration++;
+        if (flushTimeout != null) {
+            flushTimeout.cancel();
+            flushTimeout = null;
+        }
+    }
+
+    private synchronized void flushExpired(long generation) {
+        if (generation != batchGeneration || closed) {
+            return;
+        }
+
+        flushTimeout = null;
+        try {
+            flush();
+        } catch (JMSException e) {
+            connection.onAsyncException(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms;
+
+import javax.jms.Message;
+
+/**
+ * Listener that is notified when an asynchronous send from a {@link JmsMessageProducer}
+ * has completed.
+ *
+ * The listener is called from the Connection's executor thread once the remote peer has
+ * accepted the message, or the send has failed, so it may run at the same time as the
+ * Session's own dispatch.  Sends that complete with a completion listener never report
+ * failures to the Connection's ExceptionListener.  A failed send within a transacted
+ * Session also causes the next commit of that transaction to roll back.
+ */
+public interface JmsCompletionListener {
+
+    /**
+     * Called when the send of the given message has completed successfully.
+     *
+     * @param message
+     *        the Message that was sent.
+     */
+    void onCompletion(Message message);
+
+    /**
+     * Called when the send of the given message has failed.
+     *
+     * @param message
+     *        the Message whose send failed.
+     * @param exception
+     *        the error that caused the send to fail.
+     */
+    void onException(Message message, Exception exception);
+
+}
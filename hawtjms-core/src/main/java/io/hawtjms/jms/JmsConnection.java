@@ -28,10 +28,13 @@ import io.hawtjms.jms.meta.JmsConsumerId;
 import io.hawtjms.jms.meta.JmsResource;
 import io.hawtjms.jms.meta.JmsSessionId;
 import io.hawtjms.jms.meta.JmsTransactionId;
+import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.BlockingProvider;
+import io.hawtjms.provider.BlockingRequest;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderListener;
 import io.hawtjms.util.IdGenerator;
+import io.hawtjms.util.MemoryGovernor;
 import io.hawtjms.util.ThreadPoolUtils;
 
 import java.io.IOException;
@@ -42,7 +45,9 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -56,9 +61,11 @@ import javax.jms.Destination;
 import javax.jms.ExceptionListener;
 import javax.jms.IllegalStateException;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.Queue;
 import javax.jms.QueueConnection;
 import javax.jms.QueueSession;
+import javax.jms.ResourceAllocationException;
 import javax.jms.ServerSessionPool;
 import javax.jms.Session;
 import javax.jms.TemporaryQueue;
@@ -95,6 +102,12 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
     private IOException firstFailureError;
     private JmsPrefetchPolicy prefetchPolicy = new JmsPrefetchPolicy();
     private boolean messagePrioritySupported;
+    private int maxInFlightSends = JmsConnectionFactory.DEFAULT_MAX_IN_FLIGHT_SENDS;
+    private int ackBatchSize = JmsConnectionFactory.DEFAULT_ACK_BATCH_SIZE;
+    private long ackBatchTimeout = JmsConnectionFactory.DEFAULT_ACK_BATCH_TIMEOUT;
+    private boolean strictAutoAck;
+    private int dispatchBatchSize = JmsConnectionFactory.DEFAULT_DISPATCH_BATCH_SIZE;
+    private Executor dispatchPool;
 
     private final ThreadPoolExecutor executor;
 
@@ -192,6 +205,10 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
                 provider = null;
             }
 
+            if (connectionInfo.getMemoryAccount() != null) {
+                connectionInfo.getMemoryAccount().close();
+            }
+
             if (interrupted) {
                 Thread.currentThread().interrupt();
             }
@@ -627,9 +644,6 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         checkClosedOrFailed();
         connect();
 
-        // TODO - We don't currently have a way to say that an operation
-        //        should be done asynchronously.  A send can be done async
-        //        in many cases, such as non-persistent delivery.
         try {
             provider.send(envelope);
         } catch (Exception ioe) {
@@ -637,6 +651,28 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         }
     }
 
+    /**
+     * Sends the given envelope without waiting for the Provider to complete the send, the
+     * given request is signaled from the Provider's thread once the outcome is known.
+     *
+     * @param envelope
+     *        the message envelope to send.
+     * @param request
+     *        the AsyncResult that is notified of the outcome of the send.
+     *
+     * @throws JMSException if the send cannot be started.
+     */
+    void send(JmsOutboundMessageDispatch envelope, AsyncResult<Void> request) throws JMSException {
+        checkClosedOrFailed();
+        connect();
+
+        try {
+            provider.send(envelope, request);
+        } catch (Exception ioe) {
+            throw JmsExceptionSupport.create(ioe);
+        }
+    }
+
     void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType) throws JMSException {
         checkClosedOrFailed();
         connect();
@@ -652,6 +688,52 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         }
     }
 
+    /**
+     * Acknowledges a batch of messages without waiting for the Provider, the given request
+     * is signaled from the Provider's thread once the batch has been processed.
+     *
+     * @param envelopes
+     *        the envelopes of the messages being acknowledged.
+     * @param ackType
+     *        the type of acknowledgment to perform.
+     * @param request
+     *        the AsyncResult that is notified of the outcome.
+     *
+     * @throws JMSException if the acknowledgment cannot be started.
+     */
+    void acknowledge(List<JmsInboundMessageDispatch> envelopes, ACK_TYPE ackType, AsyncResult<Void> request) throws JMSException {
+        checkClosedOrFailed();
+        connect();
+
+        try {
+            provider.acknowledge(envelopes, ackType, request);
+        } catch (Exception ioe) {
+            throw JmsExceptionSupport.create(ioe);
+        }
+    }
+
+    /**
+     * Acknowledges a batch of messages with a single Provider call and waits for the
+     * Provider to finish processing it.
+     *
+     * @param envelopes
+     *        the envelopes of the messages being acknowledged.
+     * @param ackType
+     *        the type of acknowledgment to perform.
+     *
+     * @throws JMSException if the acknowledgment fails.
+     */
+    void acknowledge(List<JmsInboundMessageDispatch> envelopes, ACK_TYPE ackType) throws JMSException {
+        checkClosedOrFailed();
+        connect();
+
+        try {
+            provider.acknowledge(envelopes, ackType);
+        } catch (Exception ioe) {
+            throw JmsExceptionSupport.create(ioe);
+        }
+    }
+
     void acknowledge(JmsSessionId sessionId) throws JMSException {
         checkClosedOrFailed();
         connect();
@@ -831,6 +913,111 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         this.messagePrioritySupported = messagePrioritySupported;
     }
 
+    public int getMaxInFlightSends() {
+        return maxInFlightSends;
+    }
+
+    public void setMaxInFlightSends(int maxInFlightSends) {
+        this.maxInFlightSends = maxInFlightSends;
+    }
+
+    public int getAckBatchSize() {
+        return ackBatchSize;
+    }
+
+    public void setAckBatchSize(int ackBatchSize) {
+        this.ackBatchSize = ackBatchSize;
+    }
+
+    public long getAckBatchTimeout() {
+        return ackBatchTimeout;
+    }
+
+    public void setAckBatchTimeout(long ackBatchTimeout) {
+        this.ackBatchTimeout = ackBatchTimeout;
+    }
+
+    public boolean isStrictAutoAck() {
+        return strictAutoAck;
+    }
+
+    public void setStrictAutoAck(boolean strictAutoAck) {
+        this.strictAutoAck = strictAutoAck;
+    }
+
+    public int getDispatchBatchSize() {
+        return dispatchBatchSize;
+    }
+
+    public void setDispatchBatchSize(int dispatchBatchSize) {
+        this.dispatchBatchSize = dispatchBatchSize;
+    }
+
+    /**
+     * @return the pool shared by this Connection's Sessions for message delivery, or null
+     *         if each Session uses a dispatch thread of its own.
+     */
+    Executor getDispatchPool() {
+        return dispatchPool;
+    }
+
+    void setDispatchPool(Executor dispatchPool) {
+        this.dispatchPool = dispatchPool;
+    }
+
+    /**
+     * @return the account this Connection charges held message bytes to, or null if the
+     *         client's memory use is not governed.
+     */
+    MemoryGovernor.Account getMemoryAccount() {
+        return connectionInfo.getMemoryAccount();
+    }
+
+    void setMemoryAccount(MemoryGovernor.Account memoryAccount) {
+        connectionInfo.setMemoryAccount(memoryAccount);
+    }
+
+    /**
+     * @return the number of bytes of message data this Connection currently holds in
+     *         prefetch, pending sends and write buffers, zero if memory is not governed.
+     */
+    public long getMemoryUsage() {
+        MemoryGovernor.Account account = connectionInfo.getMemoryAccount();
+        return account != null ? account.getUsage() : 0;
+    }
+
+    /**
+     * @return the governor shared with the other Connections from the same factory, from
+     *         which usage of the whole client and of each Connection can be read, or null
+     *         if memory is not governed.
+     */
+    public MemoryGovernor getMemoryGovernor() {
+        MemoryGovernor.Account account = connectionInfo.getMemoryAccount();
+        return account != null ? account.getGovernor() : null;
+    }
+
+    /**
+     * Blocks a sender while the client's memory governor is throttling, for no longer
+     * than the configured send timeout.
+     *
+     * @throws JMSException if the send timeout expires or the wait is interrupted.
+     */
+    void awaitMemoryCapacity() throws JMSException {
+        MemoryGovernor.Account account = connectionInfo.getMemoryAccount();
+        if (account == null) {
+            return;
+        }
+
+        try {
+            if (!account.awaitCapacity(getSendTimeout())) {
+                throw new ResourceAllocationException("Timed out waiting for client memory usage to fall");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw JmsExceptionSupport.create(e);
+        }
+    }
+
     public long getCloseTimeout() {
         return connectionInfo.getCloseTimeout();
     }
@@ -863,6 +1050,43 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         connectionInfo.setRequestTimeout(requestTimeout);
     }
 
+    /**
+     * @return the name of the strategy used to wait for blocking provider requests.
+     */
+    public String getRequestWaitStrategy() {
+        return connectionInfo.getRequestWaitStrategy().name().toLowerCase();
+    }
+
+    /**
+     * Sets how a thread waits for a blocking provider request such as a synchronous send
+     * to complete, one of "park", "spin_then_park" or "busy_spin".
+     *
+     * @param requestWaitStrategy
+     *        the name of the wait strategy to use.
+     *
+     * @throws IllegalArgumentException if the name is not a known wait strategy.
+     */
+    public void setRequestWaitStrategy(String requestWaitStrategy) {
+        connectionInfo.setRequestWaitStrategy(BlockingRequest.WaitStrategy.valueOf(requestWaitStrategy.toUpperCase()));
+    }
+
+    public long getRequestSpinTime() {
+        return connectionInfo.getRequestSpinTime();
+    }
+
+    public void setRequestSpinTime(long requestSpinTime) {
+        connectionInfo.setRequestSpinTime(requestSpinTime);
+    }
+
+    /**
+     * @return the number of provider requests that failed because the send or request
+     *         timeout expired before the remote peer answered.
+     */
+    public long getTimedOutRequestCount() {
+        BlockingProvider provider = this.provider;
+        return provider != null ? provider.getTimedOutRequestCount() : 0;
+    }
+
     public URI getBrokerURI() {
         return brokerURI;
     }
@@ -923,6 +1147,10 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         return this.closed.get();
     }
 
+    boolean isFailed() {
+        return this.failed.get();
+    }
+
     JmsConnectionId getConnectionId() {
         return this.connectionInfo.getConnectionId();
     }
@@ -1068,6 +1296,41 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         }
     }
 
+    /**
+     * Notifies a producer's completion listener of the outcome of an asynchronous send.
+     * The listener is called from a thread in the Connection's Executor service so that
+     * the Provider is never blocked by application code.
+     *
+     * @param message
+     *        The Message whose send has completed.
+     * @param listener
+     *        The completion listener that was supplied with the send.
+     * @param error
+     *        The error that caused the send to fail, or null if it succeeded.
+     */
+    void onSendCompleted(final Message message, final JmsCompletionListener listener, final Throwable error) {
+        Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (error == null) {
+                        listener.onCompletion(message);
+                    } else {
+                        listener.onException(message, JmsExceptionSupport.create(error));
+                    }
+                } catch (Throwable e) {
+                    LOG.debug("Completion listener threw an exception: {}", e.getMessage());
+                }
+            }
+        };
+
+        try {
+            executor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+
     protected void providerFailed(IOException error) {
         failed.set(true);
         if (firstFailureError == null) {
@@ -20,8 +20,10 @@ import io.hawtjms.jms.exceptions.JmsExceptionSupport;
 import io.hawtjms.jms.jndi.JNDIStorable;
 import io.hawtjms.jms.meta.JmsConnectionInfo;
 import io.hawtjms.provider.BlockingProvider;
+import io.hawtjms.provider.BlockingRequest;
 import io.hawtjms.provider.ProviderFactory;
 import io.hawtjms.util.IdGenerator;
+import io.hawtjms.util.MemoryGovernor;
 import io.hawtjms.util.PropertyUtil;
 import io.hawtjms.util.URISupport;
 import io.hawtjms.util.URISupport.CompositeData;
@@ -31,6 +33,12 @@ import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
@@ -51,6 +59,12 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
 
     private static final Logger LOG = LoggerFactory.getLogger(JmsConnectionFactory.class);
 
+    public static final int DEFAULT_MAX_IN_FLIGHT_SENDS = 1;
+    public static final int DEFAULT_ACK_BATCH_SIZE = 64;
+    public static final long DEFAULT_ACK_BATCH_TIMEOUT = 100;
+    public static final int DEFAULT_DISPATCH_BATCH_SIZE = 64;
+    public static final int DEFAULT_DISPATCH_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
     private URI brokerURI;
     private URI localURI;
     private String username;
@@ -58,6 +72,17 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
     private boolean forceAsyncSend;
     private boolean omitHost;
     private boolean messagePrioritySupported = true;
+    private int maxInFlightSends = DEFAULT_MAX_IN_FLIGHT_SENDS;
+    private int ackBatchSize = DEFAULT_ACK_BATCH_SIZE;
+    private long ackBatchTimeout = DEFAULT_ACK_BATCH_TIMEOUT;
+    private boolean strictAutoAck;
+    private int dispatchBatchSize = DEFAULT_DISPATCH_BATCH_SIZE;
+    private boolean sharedDispatchPool;
+    private int dispatchPoolSize = DEFAULT_DISPATCH_POOL_SIZE;
+    private ThreadPoolExecutor dispatchPool;
+    private long memoryLimit;
+    private int memoryHighWatermark = MemoryGovernor.DEFAULT_HIGH_WATERMARK;
+    private MemoryGovernor memoryGovernor;
     private String queuePrefix = "queue://";
     private String topicPrefix = "topic://";
     private String tempQueuePrefix = "temp-queue://";
@@ -66,6 +91,8 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
     private long requestTimeout = JmsConnectionInfo.DEFAULT_REQUEST_TIMEOUT;
     private long closeTimeout = JmsConnectionInfo.DEFAULT_CLOSE_TIMEOUT;
     private long connectTimeout = JmsConnectionInfo.DEFAULT_CONNECT_TIMEOUT;
+    private String requestWaitStrategy = BlockingRequest.DEFAULT_WAIT_STRATEGY.name().toLowerCase();
+    private long requestSpinTime = BlockingRequest.DEFAULT_SPIN_TIME;
     private boolean watchRemoteDestinations = true;
     private IdGenerator clientIdGenerator;
     private String clientIDPrefix;
@@ -235,6 +262,12 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
         try {
             PropertyUtil.setProperties(connection, PropertyUtil.getProperties(this));
             connection.setExceptionListener(exceptionListener);
+            if (sharedDispatchPool) {
+                connection.setDispatchPool(dispatchPool());
+            }
+            if (memoryLimit > 0) {
+                connection.setMemoryAccount(memoryGovernor().createAccount(connection.getConnectionId().toString()));
+            }
             connection.setUsername(username);
             connection.setPassword(password);
             return connection;
@@ -243,6 +276,36 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
         }
     }
 
+    private synchronized Executor dispatchPool() {
+        if (dispatchPool == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            int size = Math.max(1, dispatchPoolSize);
+            dispatchPool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable runner) {
+                        Thread thread = new Thread(runner, "hawtJMS Session Dispatcher " + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+            // Threads are only kept while there is work so an idle factory holds none.
+            dispatchPool.allowCoreThreadTimeOut(true);
+        }
+
+        return dispatchPool;
+    }
+
+    private synchronized MemoryGovernor memoryGovernor() {
+        if (memoryGovernor == null) {
+            memoryGovernor = new MemoryGovernor(memoryLimit, memoryHighWatermark);
+        }
+
+        return memoryGovernor;
+    }
+
     protected BlockingProvider createProvider(URI brokerURI) throws Exception {
         BlockingProvider result = null;
 
@@ -416,6 +479,190 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
         this.messagePrioritySupported = messagePrioritySupported;
     }
 
+    /**
+     * @return the maximum number of unsettled persistent sends allowed per producer.
+     */
+    public int getMaxInFlightSends() {
+        return maxInFlightSends;
+    }
+
+    /**
+     * Sets the number of persistent sends a producer may have written to the remote peer
+     * before it must wait for one of them to be settled.  The default of one means each
+     * persistent send blocks until it is acknowledged.  With a larger window a failed send
+     * is reported from the next send or close of the producer.
+     *
+     * @param maxInFlightSends
+     *        the size of each producer's in-flight send window.
+     */
+    public void setMaxInFlightSends(int maxInFlightSends) {
+        this.maxInFlightSends = maxInFlightSends;
+    }
+
+    /**
+     * @return the number of consumed acks a Session collects before sending them.
+     */
+    public int getAckBatchSize() {
+        return ackBatchSize;
+    }
+
+    /**
+     * Sets the number of consumed acknowledgments that an AUTO_ACKNOWLEDGE or
+     * DUPS_OK_ACKNOWLEDGE Session collects before handing them to the provider as one
+     * batch.  Pending acks are also sent whenever the Session has no more prefetched
+     * messages to deliver, when the batch timeout expires and when the Session or its
+     * Connection is closed.
+     *
+     * Note that this means AUTO_ACKNOWLEDGE Sessions do not acknowledge each message as it
+     * is delivered unless {@link #setStrictAutoAck(boolean)} is enabled, a failure of the
+     * Connection can redeliver messages whose acks were still pending.
+     *
+     * @param ackBatchSize
+     *        the maximum number of acknowledgments in a batch.
+     */
+    public void setAckBatchSize(int ackBatchSize) {
+        this.ackBatchSize = ackBatchSize;
+    }
+
+    /**
+     * @return the maximum time in milliseconds a consumed ack is held before being sent.
+     */
+    public long getAckBatchTimeout() {
+        return ackBatchTimeout;
+    }
+
+    /**
+     * Sets the maximum age in milliseconds of a pending acknowledgment, once exceeded the
+     * batch is sent from a timer regardless of its size even if the application has stopped
+     * receiving messages.  A value of zero or less disables the timer so that a batch is
+     * only sent once full or when the Session has nothing more to deliver.
+     *
+     * @param ackBatchTimeout
+     *        the time in milliseconds a pending acknowledgment may wait.
+     */
+    public void setAckBatchTimeout(long ackBatchTimeout) {
+        this.ackBatchTimeout = ackBatchTimeout;
+    }
+
+    /**
+     * @return true if AUTO_ACKNOWLEDGE sessions wait for each ack to complete.
+     */
+    public boolean isStrictAutoAck() {
+        return strictAutoAck;
+    }
+
+    /**
+     * When enabled an AUTO_ACKNOWLEDGE Session acknowledges each message individually and
+     * waits for the provider to complete it before the next message is delivered.  By default
+     * these acks are batched and sent without waiting.
+     *
+     * @param strictAutoAck
+     *        true to acknowledge each AUTO_ACKNOWLEDGE message synchronously.
+     */
+    public void setStrictAutoAck(boolean strictAutoAck) {
+        this.strictAutoAck = strictAutoAck;
+    }
+
+    /**
+     * @return the number of messages delivered to a MessageListener before yielding.
+     */
+    public int getDispatchBatchSize() {
+        return dispatchBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of messages a consumer delivers to its MessageListener in one
+     * pass of the Session's dispatch thread.  A consumer with more messages waiting goes to
+     * the back of the queue so that other consumers in the Session get their turn.
+     *
+     * @param dispatchBatchSize
+     *        the maximum number of messages delivered before yielding.
+     */
+    public void setDispatchBatchSize(int dispatchBatchSize) {
+        this.dispatchBatchSize = dispatchBatchSize;
+    }
+
+    /**
+     * @return true if Sessions deliver messages using a pool shared by all connections.
+     */
+    public boolean isSharedDispatchPool() {
+        return sharedDispatchPool;
+    }
+
+    /**
+     * By default each Session that delivers messages asynchronously has its own dispatch
+     * thread.  When enabled the Sessions of every Connection created by this factory deliver
+     * on a shared pool of dispatchPoolSize threads instead, each Session still sees its
+     * messages delivered one at a time and in order.  A MessageListener that blocks for long
+     * periods holds one of the pool's threads while it does so.
+     *
+     * @param sharedDispatchPool
+     *        true if Sessions should share a dispatch pool.
+     */
+    public void setSharedDispatchPool(boolean sharedDispatchPool) {
+        this.sharedDispatchPool = sharedDispatchPool;
+    }
+
+    /**
+     * @return the number of threads in the shared dispatch pool.
+     */
+    public int getDispatchPoolSize() {
+        return dispatchPoolSize;
+    }
+
+    /**
+     * Sets the number of threads in the shared dispatch pool, by default the number of
+     * available processors.  Has no effect once the pool has been created.
+     *
+     * @param dispatchPoolSize
+     *        the maximum number of threads used to deliver messages.
+     */
+    public void setDispatchPoolSize(int dispatchPoolSize) {
+        this.dispatchPoolSize = dispatchPoolSize;
+    }
+
+    /**
+     * @return the number of bytes of message data all connections from this factory may hold.
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Limits the bytes of message data held by all the connections created by this factory.
+     * Counted are messages waiting in consumer prefetch and in stopped Sessions, sends not
+     * yet settled by the remote peer and data queued in transport write buffers.  Once the
+     * total reaches the memory high watermark producers block for up to the send timeout
+     * and consumers stop granting credit beyond a single message, until usage falls again.
+     * The default of zero leaves memory use ungoverned.  Has no effect on connections that
+     * were created before the limit was set.
+     *
+     * @param memoryLimit
+     *        the limit in bytes, zero or less to disable.
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * @return the percentage of the memory limit at which throttling begins.
+     */
+    public int getMemoryHighWatermark() {
+        return memoryHighWatermark;
+    }
+
+    /**
+     * Sets the percentage of the memory limit at which producers are throttled and consumer
+     * credit is withheld, by default 90.  Has no effect once the first governed connection
+     * has been created.
+     *
+     * @param memoryHighWatermark
+     *        the percentage of the memory limit, between 1 and 100.
+     */
+    public void setMemoryHighWatermark(int memoryHighWatermark) {
+        this.memoryHighWatermark = memoryHighWatermark;
+    }
+
     /**
      * Returns the prefix applied to Queues that are created by the client.
      *
@@ -531,6 +778,45 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
         this.requestTimeout = requestTimeout;
     }
 
+    /**
+     * @return the name of the strategy used to wait for blocking provider requests.
+     */
+    public String getRequestWaitStrategy() {
+        return requestWaitStrategy;
+    }
+
+    /**
+     * Sets how a thread waits for a blocking provider request such as a synchronous send
+     * to complete.  The default "park" parks the thread at once, "spin_then_park" spins
+     * while yielding the CPU for the request spin time before parking and "busy_spin"
+     * spins without yielding for the request spin time before parking.  Spinning lowers
+     * the latency of requests that complete quickly at the cost of CPU time.
+     *
+     * @param requestWaitStrategy
+     *        the name of the wait strategy to use.
+     */
+    public void setRequestWaitStrategy(String requestWaitStrategy) {
+        this.requestWaitStrategy = requestWaitStrategy;
+    }
+
+    /**
+     * @return the time in microseconds a spinning wait strategy spins before parking.
+     */
+    public long getRequestSpinTime() {
+        return requestSpinTime;
+    }
+
+    /**
+     * Sets the time in microseconds that the spinning wait strategies spin for before the
+     * waiting thread is parked.
+     *
+     * @param requestSpinTime
+     *        the spin time in microseconds.
+     */
+    public void setRequestSpinTime(long requestSpinTime) {
+        this.requestSpinTime = requestSpinTime;
+    }
+
     public JmsPrefetchPolicy getPrefetchPolicy() {
         return prefetchPolicy;
     }
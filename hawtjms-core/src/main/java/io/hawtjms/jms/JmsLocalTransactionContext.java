@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.jms.JMSException;
+import javax.jms.TransactionRolledBackException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +42,10 @@ public class JmsLocalTransactionContext {
     private JmsTransactionId transactionId;
     private JmsTransactionListener listener;
 
+    // Guarded by this, the first asynchronous failure of work enlisted in a transaction.
+    private JmsTransactionId failedTransactionId;
+    private Throwable failureCause;
+
     public JmsLocalTransactionContext(JmsSession session) {
         this.session = session;
         this.connection = session.getConnection();
@@ -102,6 +107,7 @@ public class JmsLocalTransactionContext {
             LOG.debug("Rollback: {} syncCount: {}", transactionId,
                       (synchronizations != null ? synchronizations.size() : 0));
 
+            takeFailure(transactionId);
             transactionId = null;
             connection.rollback(session.getSessionId());
 
@@ -128,6 +134,19 @@ public class JmsLocalTransactionContext {
             JmsTransactionId oldTransactionId = this.transactionId;
             transactionId = null;
             try {
+                Throwable failure = takeFailure(oldTransactionId);
+                if (failure != null) {
+                    connection.rollback(session.getSessionId());
+
+                    TransactionRolledBackException rolledBack = new TransactionRolledBackException(
+                        "Transaction rolled back because an asynchronous send failed: " + failure.getMessage());
+                    rolledBack.initCause(failure);
+                    if (failure instanceof Exception) {
+                        rolledBack.setLinkedException((Exception) failure);
+                    }
+                    throw rolledBack;
+                }
+
                 connection.commit(session.getSessionId());
                 if (listener != null) {
                     listener.onTransactionCommitted();
@@ -144,6 +163,25 @@ public class JmsLocalTransactionContext {
         }
     }
 
+    /**
+     * Marks the given transaction as rollback only because work enlisted in it, such as an
+     * asynchronous send, failed after the call that started it had returned.  The next
+     * commit of that transaction rolls it back and throws a TransactionRolledBackException.
+     * May be called from any thread.
+     *
+     * @param transactionId
+     *        the transaction that the failed work was enlisted in.
+     * @param cause
+     *        the error that the work failed with.
+     */
+    public synchronized void markRollbackOnly(JmsTransactionId transactionId, Throwable cause) {
+        if (transactionId != null && !transactionId.equals(failedTransactionId)) {
+            LOG.debug("Transaction {} marked rollback only: {}", transactionId, cause.getMessage());
+            failedTransactionId = transactionId;
+            failureCause = cause;
+        }
+    }
+
     @Override
     public String toString() {
         return "JmsLocalTransactionContext{transactionId=" + transactionId + "}";
@@ -169,6 +207,17 @@ public class JmsLocalTransactionContext {
 
     //------------- Implementation methods -----------------------------------//
 
+    private synchronized Throwable takeFailure(JmsTransactionId transactionId) {
+        Throwable cause = null;
+        if (transactionId != null && transactionId.equals(failedTransactionId)) {
+            cause = failureCause;
+        }
+
+        failedTransactionId = null;
+        failureCause = null;
+        return cause;
+    }
+
     private void afterRollback() throws JMSException {
         if (synchronizations == null) {
             return;
@@ -23,13 +23,16 @@ import io.hawtjms.jms.meta.JmsConsumerId;
 import io.hawtjms.jms.meta.JmsConsumerInfo;
 import io.hawtjms.provider.BlockingProvider;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
-import io.hawtjms.util.FifoMessageQueue;
+import io.hawtjms.util.MemoryGovernor;
 import io.hawtjms.util.MessageQueue;
 import io.hawtjms.util.PriorityMessageQueue;
+import io.hawtjms.util.RingBufferMessageQueue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -56,6 +59,18 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
     protected final Lock lock = new ReentrantLock();
     protected final AtomicBoolean suspendedConnection = new AtomicBoolean();
     protected final AtomicBoolean delivered = new AtomicBoolean();
+    protected final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    protected final int dispatchBatchSize;
+    protected final MemoryGovernor.Account memoryAccount;
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    private final Runnable dispatchTask = new Runnable() {
+
+        @Override
+        public void run() {
+            dispatchToListener();
+        }
+    };
 
     /**
      * Create a non-durable MessageConsumer
@@ -88,15 +103,20 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         this.session = session;
         this.connection = session.getConnection();
         this.acknowledgementMode = session.acknowledgementMode();
+        this.dispatchBatchSize = Math.max(1, connection.getDispatchBatchSize());
+        this.memoryAccount = connection.getMemoryAccount();
+
+        JmsPrefetchPolicy policy = this.connection.getPrefetchPolicy();
+        int prefetch = getConfiguredPrefetch(destination, policy);
 
         if (connection.isMessagePrioritySupported()) {
             this.messageQueue = new PriorityMessageQueue();
         } else {
-            this.messageQueue = new FifoMessageQueue();
+            // Sized to hold a full prefetch window, anything beyond that spills to an overflow list.
+            this.messageQueue = new RingBufferMessageQueue(
+                Math.min(Math.max(1, prefetch), RingBufferMessageQueue.DEFAULT_CAPACITY));
         }
 
-        JmsPrefetchPolicy policy = this.connection.getPrefetchPolicy();
-
         this.consumerInfo = new JmsConsumerInfo(consumerId);
         this.consumerInfo.setClientId(connection.getClientID());
         this.consumerInfo.setSelector(selector);
@@ -105,7 +125,12 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         this.consumerInfo.setAcknowledgementMode(acknowledgementMode);
         this.consumerInfo.setNoLocal(noLocal);
         this.consumerInfo.setBrowser(isBrowser());
-        this.consumerInfo.setPrefetchSize(getConfiguredPrefetch(destination, policy));
+        this.consumerInfo.setPrefetchSize(prefetch);
+        this.consumerInfo.setCreditRefillThreshold(policy.getCreditRefillThreshold());
+        this.consumerInfo.setMaxPrefetchSize(policy.getMaxPrefetchSize());
+        this.consumerInfo.setMaxPrefetchBytes(isBrowser() ? 0 : policy.getMaxPrefetchBytes());
+        this.consumerInfo.setAdaptivePrefetch(policy.isAdaptive() && prefetch > 0 && !isBrowser());
+        this.consumerInfo.setAdaptiveTargetLatency(policy.getAdaptiveTargetLatency());
 
         try {
             this.consumerInfo = session.getConnection().createResource(consumerInfo);
@@ -156,6 +181,7 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
      * @throws JMSException
      */
     protected void doClose() throws JMSException {
+        session.flushAcknowledgements();
         shutdown();
         this.connection.destroyResource(consumerInfo);
     }
@@ -170,6 +196,7 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
     protected void shutdown() throws JMSException {
         if (closed.compareAndSet(false, true)) {
             this.session.remove(this);
+            releaseQueued();
         }
     }
 
@@ -185,7 +212,7 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         sendPullCommand(0);
 
         try {
-            return copy(ack(this.messageQueue.dequeue(-1)));
+            return share(ack(this.messageQueue.dequeue(-1)));
         } catch (Exception e) {
             throw JmsExceptionSupport.create(e);
         }
@@ -205,7 +232,7 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
 
         if (timeout > 0) {
             try {
-                return copy(ack(this.messageQueue.dequeue(timeout)));
+                return share(ack(this.messageQueue.dequeue(timeout)));
             } catch (InterruptedException e) {
                 throw JmsExceptionSupport.create(e);
             }
@@ -225,7 +252,74 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         checkMessageListener();
         sendPullCommand(-1);
 
-        return copy(ack(this.messageQueue.dequeueNoWait()));
+        return share(ack(this.messageQueue.dequeueNoWait()));
+    }
+
+    /**
+     * Receives up to the given number of messages in one call.  Waits at most the given
+     * timeout for the first message to arrive and then takes whatever else this consumer
+     * has already buffered without waiting further.  The messages are removed from the
+     * consumer under a single acquisition of its queue lock and acknowledged with one
+     * request to the provider, as delivered when the Session is transacted or uses
+     * CLIENT_ACKNOWLEDGE and as consumed otherwise.
+     *
+     * @param maxMessages
+     *        the largest number of messages to return, must be at least 1.
+     * @param timeout
+     *        the time in milliseconds to wait for the first message, as in the JMS
+     *        contract for receive(long) a value of zero or less waits until one arrives.
+     *
+     * @return the messages received, an empty List if none arrived before the timeout.
+     *
+     * @throws JMSException if the consumer is closed or the acknowledgment fails.
+     */
+    public List<Message> receive(int maxMessages, long timeout) throws JMSException {
+        checkBatchReceive(maxMessages);
+
+        if (timeout <= 0) {
+            sendPullCommand(0);
+            return receiveBatch(maxMessages, -1);
+        } else {
+            sendPullCommand(timeout);
+            return receiveBatch(maxMessages, timeout);
+        }
+    }
+
+    /**
+     * Receives up to the given number of messages that this consumer has already buffered
+     * without waiting, acknowledged in the same way as {@link #receive(int, long)}.
+     *
+     * @param maxMessages
+     *        the largest number of messages to return, must be at least 1.
+     *
+     * @return the messages received, an empty List if none were buffered.
+     *
+     * @throws JMSException if the consumer is closed or the acknowledgment fails.
+     */
+    public List<Message> receiveNoWait(int maxMessages) throws JMSException {
+        checkBatchReceive(maxMessages);
+        sendPullCommand(-1);
+
+        return receiveBatch(maxMessages, 0);
+    }
+
+    private void checkBatchReceive(int maxMessages) throws JMSException {
+        checkClosed();
+        checkMessageListener();
+        if (maxMessages < 1) {
+            throw new JMSException("Illegal batch size of " + maxMessages + ", at least 1 message must be requested");
+        }
+    }
+
+    /*
+     * The timeout is that of MessageQueue#dequeue, -1 to wait forever and 0 not to wait.
+     */
+    private List<Message> receiveBatch(int maxMessages, long timeout) throws JMSException {
+        try {
+            return share(ack(this.messageQueue.dequeue(maxMessages, timeout)));
+        } catch (InterruptedException e) {
+            throw JmsExceptionSupport.create(e);
+        }
     }
 
     protected void checkClosed() throws IllegalStateException {
@@ -234,14 +328,18 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         }
     }
 
-    JmsMessage copy(final JmsInboundMessageDispatch envelope) throws JMSException {
+    JmsMessage share(final JmsInboundMessageDispatch envelope) throws JMSException {
         if (envelope == null || envelope.getMessage() == null) {
             return null;
         }
-        return envelope.getMessage().copy();
+        return envelope.getMessage().share(envelope);
     }
 
     JmsInboundMessageDispatch ack(final JmsInboundMessageDispatch envelope) throws JMSException {
+        if (envelope != null && memoryAccount != null) {
+            queuedBytes.addAndGet(-envelope.getEncodedSize());
+            memoryAccount.release(envelope.getEncodedSize());
+        }
         if (envelope != null && envelope.getMessage() != null) {
             JmsMessage message = envelope.getMessage();
             if (message.getAcknowledgeCallback() != null || session.isTransacted()) {
@@ -250,6 +348,11 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
                 session.acknowledge(envelope, ACK_TYPE.DELIVERED);
             } else {
                 doAck(envelope);
+
+                // Nothing more is buffered so batched acks should not be held any longer.
+                if (messageQueue.isEmpty()) {
+                    session.flushAcknowledgements();
+                }
             }
             // Tags that we have delivered and can't close if in a TX Session.
             delivered.set(true);
@@ -257,6 +360,47 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         return envelope;
     }
 
+    List<Message> share(final List<JmsInboundMessageDispatch> envelopes) throws JMSException {
+        List<Message> messages = new ArrayList<Message>(envelopes.size());
+        for (JmsInboundMessageDispatch envelope : envelopes) {
+            messages.add(share(envelope));
+        }
+        return messages;
+    }
+
+    List<JmsInboundMessageDispatch> ack(final List<JmsInboundMessageDispatch> envelopes) throws JMSException {
+        List<JmsInboundMessageDispatch> received = new ArrayList<JmsInboundMessageDispatch>(envelopes.size());
+        long bytes = 0;
+        for (JmsInboundMessageDispatch envelope : envelopes) {
+            bytes += envelope.getEncodedSize();
+            if (envelope.getMessage() != null) {
+                received.add(envelope);
+            }
+        }
+
+        if (memoryAccount != null) {
+            queuedBytes.addAndGet(-bytes);
+            memoryAccount.release(bytes);
+        }
+
+        if (!received.isEmpty()) {
+            if (session.isTransacted() || acknowledgementMode == Session.CLIENT_ACKNOWLEDGE) {
+                session.acknowledge(received, ACK_TYPE.DELIVERED);
+            } else {
+                checkClosed();
+                try {
+                    session.acknowledge(received, ACK_TYPE.CONSUMED);
+                } catch (JMSException ex) {
+                    session.onException(ex);
+                    throw ex;
+                }
+            }
+            // Tags that we have delivered and can't close if in a TX Session.
+            delivered.set(true);
+        }
+        return received;
+    }
+
     private void doAck(final JmsInboundMessageDispatch envelope) throws JMSException {
         checkClosed();
         try {
@@ -291,24 +435,52 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
                 });
             }
             this.messageQueue.enqueue(envelope);
+            if (memoryAccount != null) {
+                queuedBytes.addAndGet(envelope.getEncodedSize());
+                memoryAccount.reserve(envelope.getEncodedSize());
+            }
         } finally {
             lock.unlock();
         }
 
         if (this.messageListener != null && this.started) {
-            session.getExecutor().execute(new Runnable() {
-                @Override
-                public void run() {
-                    JmsInboundMessageDispatch envelope;
-                    while (session.isStarted() && (envelope = messageQueue.dequeueNoWait()) != null) {
-                        try {
-                            messageListener.onMessage(copy(ack(envelope)));
-                        } catch (Exception e) {
-                            session.getConnection().onException(e);
-                        }
-                    }
-                }
-            });
+            scheduleDispatch();
+        }
+    }
+
+    /**
+     * Queues a drain of this consumer's messages on the Session executor unless one is
+     * already pending, the pending task will pick up any message that arrives before it runs.
+     */
+    private void scheduleDispatch() {
+        if (dispatchScheduled.compareAndSet(false, true)) {
+            session.getExecutor().execute(dispatchTask);
+        }
+    }
+
+    /*
+     * Delivers up to a batch of messages to the listener, if more remain the consumer is
+     * rescheduled behind any other work queued on the Session executor.
+     */
+    private void dispatchToListener() {
+        MessageListener listener = this.messageListener;
+        int count = 0;
+        JmsInboundMessageDispatch envelope;
+        while (listener != null && count < dispatchBatchSize && session.isStarted() &&
+               (envelope = messageQueue.dequeueNoWait()) != null) {
+            try {
+                listener.onMessage(share(ack(envelope)));
+            } catch (Exception e) {
+                session.getConnection().onException(e);
+            }
+            count++;
+        }
+
+        dispatchScheduled.set(false);
+
+        // A message that arrived while the flag was still set did not schedule a dispatch.
+        if (messageListener != null && started && session.isStarted() && !messageQueue.isEmpty()) {
+            scheduleDispatch();
         }
     }
 
@@ -340,7 +512,7 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
                 List<JmsInboundMessageDispatch> drain = this.messageQueue.removeAll();
                 for (JmsInboundMessageDispatch envelope : drain) {
                     try {
-                        listener.onMessage(copy(ack(envelope)));
+                        listener.onMessage(share(ack(envelope)));
                     } catch (Exception e) {
                         session.getConnection().onException(e);
                     }
@@ -405,6 +577,17 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         return this.consumerInfo.getPrefetchSize();
     }
 
+    /**
+     * Gets the prefetch window currently in effect for this consumer.  When the prefetch
+     * policy is adaptive this tracks the rate at which messages are being consumed,
+     * otherwise it is the configured prefetch size.
+     *
+     * @return the current prefetch size of this consumer.
+     */
+    public int getCurrentPrefetchSize() {
+        return this.consumerInfo.getCurrentPrefetchSize();
+    }
+
     protected void checkMessageListener() throws JMSException {
         session.checkMessageListener();
     }
@@ -435,6 +618,16 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
 
     protected void onConnectionInterrupted() {
         messageQueue.clear();
+        releaseQueued();
+    }
+
+    /*
+     * Gives back the bytes of any messages left in the queue when it is discarded.
+     */
+    private void releaseQueued() {
+        if (memoryAccount != null) {
+            memoryAccount.release(queuedBytes.getAndSet(0));
+        }
     }
 
     protected void onConnectionRecovery(BlockingProvider provider) throws Exception {
@@ -16,11 +16,16 @@
  */
 package io.hawtjms.jms;
 
+import io.hawtjms.jms.exceptions.JmsExceptionSupport;
 import io.hawtjms.jms.message.JmsMessageTransformation;
+import io.hawtjms.jms.meta.JmsConnectionInfo;
 import io.hawtjms.jms.meta.JmsProducerId;
 import io.hawtjms.jms.meta.JmsProducerInfo;
+import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.BlockingProvider;
 
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -48,11 +53,16 @@ public class JmsMessageProducer implements MessageProducer {
     protected boolean disableMessageId;
     protected boolean disableTimestamp;
     protected final AtomicLong messageSequence = new AtomicLong();
+    protected final int maxInFlightSends;
+    protected final Semaphore sendWindow;
+    protected volatile Throwable sendWindowFailure;
 
     protected JmsMessageProducer(JmsProducerId producerId, JmsSession session, JmsDestination destination) throws JMSException {
         this.session = session;
         this.connection = session.getConnection();
         this.flexibleDestination = destination == null;
+        this.maxInFlightSends = Math.max(1, connection.getMaxInFlightSends());
+        this.sendWindow = new Semaphore(maxInFlightSends);
         this.producerInfo = new JmsProducerInfo(producerId);
         this.producerInfo.setDestination(destination);
         this.producerInfo = session.getConnection().createResource(producerInfo);
@@ -79,8 +89,19 @@ public class JmsMessageProducer implements MessageProducer {
      * @throws JMSException
      */
     protected void doClose() throws JMSException {
+        JMSException sendFailure = null;
+        try {
+            awaitInFlightSends();
+        } catch (JMSException e) {
+            sendFailure = e;
+        }
+
         shutdown();
         this.connection.destroyResource(producerInfo);
+
+        if (sendFailure != null) {
+            throw sendFailure;
+        }
     }
 
     /**
@@ -93,6 +114,9 @@ public class JmsMessageProducer implements MessageProducer {
     protected void shutdown() throws JMSException {
         if (closed.compareAndSet(false, true)) {
             this.session.remove(this);
+
+            // Wake any sender still waiting on the window, it will see the closed state.
+            sendWindow.release(maxInFlightSends);
         }
     }
 
@@ -209,6 +233,83 @@ public class JmsMessageProducer implements MessageProducer {
      */
     @Override
     public void send(Destination destination, Message message, int deliveryMode, int priority, long timeToLive) throws JMSException {
+        send(destination, message, deliveryMode, priority, timeToLive, null);
+    }
+
+    /**
+     * Sends the message without waiting for the remote peer to accept it, the given
+     * listener is notified once the outcome of the send is known.
+     *
+     * @param message
+     *        the message to send.
+     * @param listener
+     *        the listener that is notified when the send completes.
+     *
+     * @throws JMSException if the send cannot be started.
+     */
+    public void send(Message message, JmsCompletionListener listener) throws JMSException {
+        send(producerInfo.getDestination(), message, this.deliveryMode, this.priority, this.timeToLive, listener);
+    }
+
+    /**
+     * Sends the message to the given destination without waiting for the remote peer to
+     * accept it, the given listener is notified once the outcome of the send is known.
+     *
+     * @param destination
+     *        the destination to send the message to.
+     * @param message
+     *        the message to send.
+     * @param listener
+     *        the listener that is notified when the send completes.
+     *
+     * @throws JMSException if the send cannot be started.
+     */
+    public void send(Destination destination, Message message, JmsCompletionListener listener) throws JMSException {
+        send(destination, message, this.deliveryMode, this.priority, this.timeToLive, listener);
+    }
+
+    /**
+     * Sends the message without waiting for the remote peer to accept it, the given
+     * listener is notified once the outcome of the send is known.
+     *
+     * @param message
+     *        the message to send.
+     * @param deliveryMode
+     *        the delivery mode to use.
+     * @param priority
+     *        the priority for this message.
+     * @param timeToLive
+     *        the message's lifetime in milliseconds.
+     * @param listener
+     *        the listener that is notified when the send completes.
+     *
+     * @throws JMSException if the send cannot be started.
+     */
+    public void send(Message message, int deliveryMode, int priority, long timeToLive, JmsCompletionListener listener) throws JMSException {
+        send(producerInfo.getDestination(), message, deliveryMode, priority, timeToLive, listener);
+    }
+
+    /**
+     * Sends the message to the given destination without waiting for the remote peer to
+     * accept it.  When a listener is given it is notified once the outcome of the send is
+     * known, a null listener results in a normal send.
+     *
+     * @param destination
+     *        the destination to send the message to.
+     * @param message
+     *        the message to send.
+     * @param deliveryMode
+     *        the delivery mode to use.
+     * @param priority
+     *        the priority for this message.
+     * @param timeToLive
+     *        the message's lifetime in milliseconds.
+     * @param listener
+     *        the listener that is notified when the send completes, or null.
+     *
+     * @throws JMSException if the send cannot be started.
+     */
+    public void send(Destination destination, Message message, int deliveryMode, int priority, long timeToLive, JmsCompletionListener listener) throws JMSException {
         checkClosed();
 
         if (destination == null) {
@@ -218,7 +319,7 @@ public class JmsMessageProducer implements MessageProducer {
             throw new UnsupportedOperationException("This producer can only send messages to: " + producerInfo.getDestination().getName());
         }
 
-        this.session.send(this, destination, message, deliveryMode, priority, timeToLive, disableMessageId);
+        this.session.send(this, destination, message, deliveryMode, priority, timeToLive, disableMessageId, listener);
     }
 
     /**
@@ -306,6 +407,102 @@ public class JmsMessageProducer implements MessageProducer {
         return this.messageSequence.incrementAndGet();
     }
 
+    /**
+     * @return true if persistent sends from this producer are pipelined rather than
+     *         being sent one at a time.
+     */
+    protected boolean isSendWindowEnabled() {
+        return maxInFlightSends > 1;
+    }
+
+    /**
+     * Reserves a slot in this producer's in-flight send window, blocking for up to the
+     * configured send timeout if the window is full.  The returned AsyncResult must be
+     * handed to the provider with the send, it frees the slot once the remote peer has
+     * settled the message.  A failure of an earlier windowed send is thrown from here.
+     *
+     * @return the AsyncResult that tracks the outcome of the send.
+     *
+     * @throws JMSException if a previous send failed or the window did not open in time.
+     */
+    protected AsyncResult<Void> acquireSendWindow() throws JMSException {
+        checkSendWindowFailure();
+
+        long timeout = connection.getSendTimeout();
+        try {
+            if (timeout == JmsConnectionInfo.INFINITE) {
+                sendWindow.acquire();
+            } else if (!sendWindow.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new JMSException("Timed out waiting for a previous send to complete");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw JmsExceptionSupport.create(e);
+        }
+
+        if (closed.get()) {
+            sendWindow.release();
+            checkClosed();
+        }
+
+        return new WindowedSend();
+    }
+
+    /**
+     * Gives back a slot taken by {@link #acquireSendWindow()} for a send that never reached
+     * the provider, the provider will not settle it so the slot would otherwise be lost.
+     *
+     * @param send
+     *        the AsyncResult returned when the slot was acquired.
+     */
+    protected void abandonSendWindow(AsyncResult<Void> send) {
+        if (send instanceof WindowedSend) {
+            ((WindowedSend) send).abandon();
+        }
+    }
+
+    /**
+     * Waits for all sends in the in-flight window to be settled, throwing the first error
+     * that any of them encountered.  The wait is bounded by the connection's close timeout,
+     * sends still unsettled after that are abandoned and reported as a failure.
+     *
+     * @throws JMSException if a windowed send failed or did not settle in time.
+     */
+    protected void awaitInFlightSends() throws JMSException {
+        if (isSendWindowEnabled() && !closed.get()) {
+            long timeout = connection.getCloseTimeout();
+            try {
+                if (timeout == JmsConnectionInfo.INFINITE) {
+                    sendWindow.acquire(maxInFlightSends);
+                } else if (!sendWindow.tryAcquire(maxInFlightSends, timeout, TimeUnit.MILLISECONDS)) {
+                    throw new JMSException("Timed out waiting for " + getInFlightSendCount() +
+                                           " in-flight sends to complete");
+                }
+                sendWindow.release(maxInFlightSends);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw JmsExceptionSupport.create(e);
+            }
+        }
+
+        checkSendWindowFailure();
+    }
+
+    /**
+     * @return the number of sends that have been written but not yet settled.
+     */
+    public int getInFlightSendCount() {
+        return maxInFlightSends - sendWindow.availablePermits();
+    }
+
+    private void checkSendWindowFailure() throws JMSException {
+        Throwable failure = sendWindowFailure;
+        if (failure != null) {
+            sendWindowFailure = null;
+            throw JmsExceptionSupport.create(failure);
+        }
+    }
+
     protected void checkClosed() throws IllegalStateException {
         if (closed.get()) {
             throw new IllegalStateException("The MessageProducer is closed");
@@ -328,4 +525,45 @@ public class JmsMessageProducer implements MessageProducer {
 
     protected void onConnectionRestored() {
     }
+
+    private final class WindowedSend implements AsyncResult<Void> {
+
+        private final AtomicBoolean complete = new AtomicBoolean();
+
+        @Override
+        public void onFailure(Throwable result) {
+            if (complete.compareAndSet(false, true)) {
+                if (sendWindowFailure == null) {
+                    sendWindowFailure = result;
+                }
+                sendWindow.release();
+            }
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+            if (complete.compareAndSet(false, true)) {
+                sendWindow.release();
+            }
+        }
+
+        @Override
+        public void onSuccess() {
+            onSuccess(null);
+        }
+
+        @Override
+        public boolean isComplete() {
+            return complete.get();
+        }
+
+        /*
+         * Frees the slot without recording a failure, the caller already has the error.
+         */
+        public void abandon() {
+            if (complete.compareAndSet(false, true)) {
+                sendWindow.release();
+            }
+        }
+    }
 }
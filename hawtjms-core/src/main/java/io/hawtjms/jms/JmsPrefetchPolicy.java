@@ -33,6 +33,8 @@ public class JmsPrefetchPolicy extends Object implements Serializable {
     public static final int DEFAULT_QUEUE_BROWSER_PREFETCH = 500;
     public static final int DEFAULT_DURABLE_TOPIC_PREFETCH = 100;
     public static final int DEFAULT_TOPIC_PREFETCH = MAX_PREFETCH_SIZE;
+    public static final int DEFAULT_CREDIT_REFILL_THRESHOLD = 50;
+    public static final long DEFAULT_ADAPTIVE_TARGET_LATENCY = 100;
 
     private static final Logger LOG = LoggerFactory.getLogger(JmsPrefetchPolicy.class);
 
@@ -41,6 +43,10 @@ public class JmsPrefetchPolicy extends Object implements Serializable {
     private int topicPrefetch;
     private int durableTopicPrefetch;
     private int maxPrefetchSize = MAX_PREFETCH_SIZE;
+    private int creditRefillThreshold = DEFAULT_CREDIT_REFILL_THRESHOLD;
+    private boolean adaptive;
+    private long adaptiveTargetLatency = DEFAULT_ADAPTIVE_TARGET_LATENCY;
+    private long maxPrefetchBytes;
 
     /**
      * Initialize default prefetch policies
@@ -63,6 +69,10 @@ public class JmsPrefetchPolicy extends Object implements Serializable {
         this.queueBrowserPrefetch = source.getQueueBrowserPrefetch();
         this.topicPrefetch = source.getTopicPrefetch();
         this.durableTopicPrefetch = source.getDurableTopicPrefetch();
+        this.creditRefillThreshold = source.getCreditRefillThreshold();
+        this.adaptive = source.isAdaptive();
+        this.adaptiveTargetLatency = source.getAdaptiveTargetLatency();
+        this.maxPrefetchBytes = source.getMaxPrefetchBytes();
     }
 
     /**
@@ -146,6 +156,87 @@ public class JmsPrefetchPolicy extends Object implements Serializable {
         this.maxPrefetchSize = maxPrefetchSize;
     }
 
+    /**
+     * @return the percentage of the prefetch window left outstanding when it is refilled.
+     */
+    public int getCreditRefillThreshold() {
+        return creditRefillThreshold;
+    }
+
+    /**
+     * Sets the point at which a consumer returns credit for the messages it has acknowledged.
+     * The prefetch window is topped up in a single grant once the credit still outstanding
+     * falls below this percentage of the prefetch size, rather than one message at a time.
+     * A value of 100 grants credit for every message, lower values send fewer grants at the
+     * cost of letting the window drain further before it is refilled.
+     *
+     * @param creditRefillThreshold
+     *        the percentage of the prefetch size, between 0 and 100.
+     */
+    public void setCreditRefillThreshold(int creditRefillThreshold) {
+        this.creditRefillThreshold = Math.max(0, Math.min(100, creditRefillThreshold));
+    }
+
+    /**
+     * @return true if consumers size their prefetch from their measured processing rate.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Enables adaptive prefetch.  The configured prefetch values become the starting size
+     * of each consumer's window, which then grows or shrinks with the rate at which the
+     * application consumes so that a message waits about the target latency in the local
+     * queue.  The window never exceeds the max prefetch size.  Consumers with a prefetch
+     * of zero and queue browsers are not affected.
+     *
+     * @param adaptive
+     *        true to let consumers adjust their prefetch while running.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @return the time in milliseconds an adaptive consumer aims to keep a message buffered.
+     */
+    public long getAdaptiveTargetLatency() {
+        return adaptiveTargetLatency;
+    }
+
+    /**
+     * Sets the time in milliseconds an adaptive consumer aims to keep a message waiting in
+     * its local queue before the application takes it.
+     *
+     * @param adaptiveTargetLatency
+     *        the target queue residency time in milliseconds, at least 1.
+     */
+    public void setAdaptiveTargetLatency(long adaptiveTargetLatency) {
+        this.adaptiveTargetLatency = Math.max(1, adaptiveTargetLatency);
+    }
+
+    /**
+     * @return the limit on bytes a consumer may hold in its prefetch, zero for no limit.
+     */
+    public long getMaxPrefetchBytes() {
+        return maxPrefetchBytes;
+    }
+
+    /**
+     * Sets a limit on the bytes of message data each consumer may hold in its prefetch,
+     * counting messages waiting in the consumer and those already on their way to it.
+     * Credit for more messages is only granted while the encoded size of what is held
+     * stays under the limit, the message count prefetch values still apply as well.  One
+     * message is always allowed so a message larger than the limit can be received.
+     *
+     * @param maxPrefetchBytes
+     *        the byte limit per consumer, zero or less to count messages only.
+     */
+    public void setMaxPrefetchBytes(long maxPrefetchBytes) {
+        this.maxPrefetchBytes = Math.max(0, maxPrefetchBytes);
+    }
+
     /**
      * Sets the prefetch values for all options in this policy to the set limit.  If the value
      * given is larger than the max prefetch value of this policy the new limit will be capped
@@ -166,7 +257,10 @@ public class JmsPrefetchPolicy extends Object implements Serializable {
         if (object instanceof JmsPrefetchPolicy) {
             JmsPrefetchPolicy other = (JmsPrefetchPolicy) object;
             return this.queuePrefetch == other.queuePrefetch && this.queueBrowserPrefetch == other.queueBrowserPrefetch
-                && this.topicPrefetch == other.topicPrefetch && this.durableTopicPrefetch == other.durableTopicPrefetch;
+                && this.topicPrefetch == other.topicPrefetch && this.durableTopicPrefetch == other.durableTopicPrefetch
+                && this.creditRefillThreshold == other.creditRefillThreshold
+                && this.adaptive == other.adaptive && this.adaptiveTargetLatency == other.adaptiveTargetLatency
+                && this.maxPrefetchBytes == other.maxPrefetchBytes;
         }
         return false;
     }
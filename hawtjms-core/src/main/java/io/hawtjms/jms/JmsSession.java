@@ -26,8 +26,12 @@ import io.hawtjms.jms.meta.JmsMessageId;
 import io.hawtjms.jms.meta.JmsProducerId;
 import io.hawtjms.jms.meta.JmsSessionId;
 import io.hawtjms.jms.meta.JmsSessionInfo;
+import io.hawtjms.jms.meta.JmsTransactionId;
+import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.BlockingProvider;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
+import io.hawtjms.util.MemoryGovernor;
+import io.hawtjms.util.SerialExecutor;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -93,13 +97,14 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
         new LinkedBlockingQueue<JmsInboundMessageDispatch>(10000);
     private JmsPrefetchPolicy prefetchPolicy;
     private JmsSessionInfo sessionInfo;
-    private ExecutorService executor;
+    private Executor executor;
     private final ReentrantLock sendLock = new ReentrantLock();
 
     private final AtomicLong consumerIdGenerator = new AtomicLong();
     private final AtomicLong producerIdGenerator = new AtomicLong();
     private JmsLocalTransactionContext transactionContext;
     private JmsMessageFactory messageFactory;
+    private final JmsAckAccumulator ackAccumulator;
 
     protected JmsSession(JmsConnection connection, JmsSessionId sessionId, int acknowledgementMode) throws JMSException {
         this.connection = connection;
@@ -107,6 +112,14 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
         this.forceAsyncSend = connection.isForceAsyncSend();
         this.prefetchPolicy = new JmsPrefetchPolicy(connection.getPrefetchPolicy());
 
+        if (acknowledgementMode == Session.DUPS_OK_ACKNOWLEDGE ||
+            (acknowledgementMode == Session.AUTO_ACKNOWLEDGE && !connection.isStrictAutoAck())) {
+            this.ackAccumulator = new JmsAckAccumulator(
+                connection, connection.getAckBatchSize(), connection.getAckBatchTimeout());
+        } else {
+            this.ackAccumulator = null;
+        }
+
         setTransactionContext(new JmsLocalTransactionContext(this));
 
         this.sessionInfo = new JmsSessionInfo(sessionId);
@@ -214,6 +227,7 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
      */
     protected void doClose() throws JMSException {
         boolean interrupted = Thread.interrupted();
+        flushAcknowledgements();
         shutdown();
         this.connection.removeSession(this);
         this.connection.destroyResource(sessionInfo);
@@ -236,6 +250,19 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
     protected void shutdown() throws JMSException {
         if (closed.compareAndSet(false, true)) {
             stop();
+            if (ackAccumulator != null) {
+                // Messages already handed to the application must not be redelivered because
+                // the Connection was closed, pending acks are only dropped after a failure.
+                if (!connection.isFailed()) {
+                    try {
+                        ackAccumulator.flush();
+                    } catch (JMSException e) {
+                        connection.onAsyncException(e);
+                    }
+                }
+                ackAccumulator.close();
+            }
+
             for (JmsMessageConsumer consumer : new ArrayList<JmsMessageConsumer>(this.consumers.values())) {
                 consumer.shutdown();
             }
@@ -667,11 +694,17 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
     }
 
     protected void send(JmsMessageProducer producer, Destination dest, Message msg, int deliveryMode, int priority, long timeToLive, boolean disableMsgId) throws JMSException {
+        send(producer, dest, msg, deliveryMode, priority, timeToLive, disableMsgId, null);
+    }
+
+    protected void send(JmsMessageProducer producer, Destination dest, Message msg, int deliveryMode, int priority, long timeToLive, boolean disableMsgId, JmsCompletionListener listener) throws JMSException {
         JmsDestination destination = JmsMessageTransformation.transformDestination(connection, dest);
-        send(producer, destination, msg, deliveryMode, priority, timeToLive, disableMsgId);
+        send(producer, destination, msg, deliveryMode, priority, timeToLive, disableMsgId, listener);
     }
 
-    private void send(JmsMessageProducer producer, JmsDestination destination, Message original, int deliveryMode, int priority, long timeToLive, boolean disableMsgId) throws JMSException {
+    private void send(JmsMessageProducer producer, JmsDestination destination, Message original, int deliveryMode, int priority, long timeToLive, boolean disableMsgId, JmsCompletionListener listener) throws JMSException {
+        connection.awaitMemoryCapacity();
+
         sendLock.lock();
         try {
             startNextTransaction();
@@ -719,12 +752,23 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
             envelope.setProducerId(producer.getProducerId());
             envelope.setDestination(destination);
 
-            if (sync) {
+            if (listener != null) {
+                this.connection.send(envelope, new SendCompletion(original, listener, transactionContext.getTransactionId()));
+            } else if (sync && producer.isSendWindowEnabled()) {
+                AsyncResult<Void> windowedSend = producer.acquireSendWindow();
+                boolean sent = false;
+                try {
+                    this.connection.send(envelope, windowedSend);
+                    sent = true;
+                } finally {
+                    if (!sent) {
+                        producer.abandonSendWindow(windowedSend);
+                    }
+                }
+            } else if (sync) {
                 this.connection.send(envelope);
             } else {
-                this.connection.send(envelope);
-                // TODO - Async sends should be supported
-                //        we could force this down into the provider though
+                this.connection.send(envelope, new SendCompletion(original, null, transactionContext.getTransactionId()));
             }
         } finally {
             sendLock.unlock();
@@ -733,9 +777,49 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
 
     void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType) throws JMSException {
         startNextTransaction();
+        if (ackAccumulator != null) {
+            if (ackType == ACK_TYPE.CONSUMED) {
+                ackAccumulator.add(envelope);
+                return;
+            }
+
+            // Keep acks in order, anything batched so far must go out first.
+            ackAccumulator.flush();
+        }
         this.connection.acknowledge(envelope, ackType);
     }
 
+    /**
+     * Acknowledges a batch of messages received together with a single Provider call.
+     *
+     * @param envelopes
+     *        the envelopes of the messages being acknowledged.
+     * @param ackType
+     *        the type of acknowledgment to perform.
+     *
+     * @throws JMSException if an error occurs while the acknowledge is processed.
+     */
+    void acknowledge(List<JmsInboundMessageDispatch> envelopes, ACK_TYPE ackType) throws JMSException {
+        startNextTransaction();
+        if (ackAccumulator != null) {
+            // Keep acks in order, anything batched so far must go out first.
+            ackAccumulator.flush();
+        }
+        this.connection.acknowledge(envelopes, ackType);
+    }
+
+    /**
+     * Sends any consumed acknowledgments that this Session has batched up.  Called when a
+     * consumer has no more messages to deliver and before consumers are closed.
+     *
+     * @throws JMSException if the acknowledgments could not be handed to the provider.
+     */
+    void flushAcknowledgements() throws JMSException {
+        if (ackAccumulator != null && !closed.get()) {
+            ackAccumulator.flush();
+        }
+    }
+
     /**
      * Acknowledge all previously delivered messages in this Session as consumed.  This
      * method is usually only called when the Session is in the CLIENT_ACKNOWLEDGE mode.
@@ -837,8 +921,16 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
 
     protected void start() throws JMSException {
         if (started.compareAndSet(false, true)) {
+            if (executor instanceof SerialExecutor) {
+                ((SerialExecutor) executor).start();
+            }
+
             JmsInboundMessageDispatch message = null;
+            MemoryGovernor.Account account = connection.getMemoryAccount();
             while ((message = this.stoppedMessages.poll()) != null) {
+                if (account != null) {
+                    account.release(message.getEncodedSize());
+                }
                 deliver(message);
             }
             for (JmsMessageConsumer consumer : consumers.values()) {
@@ -857,9 +949,13 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
 
     protected void stop() throws JMSException {
         started.set(false);
-        if (executor != null) {
-            executor.shutdown();
+        // A strand on the shared pool is kept so that work it still holds cannot overlap
+        // with work submitted after a restart, stopping it waits out a running listener.
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
             executor = null;
+        } else if (executor instanceof SerialExecutor) {
+            ((SerialExecutor) executor).stop();
         }
         for (JmsMessageConsumer consumer : consumers.values()) {
             consumer.stop();
@@ -875,7 +971,9 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
     }
 
     Executor getExecutor() {
-        if (executor == null) {
+        if (executor == null && connection.getDispatchPool() != null) {
+            executor = new SerialExecutor(connection.getDispatchPool(), connection.getDispatchBatchSize());
+        } else if (executor == null) {
             executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
 
                 @Override
@@ -955,6 +1053,10 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
             deliver(envelope);
         } else {
             this.stoppedMessages.add(envelope);
+            MemoryGovernor.Account account = connection.getMemoryAccount();
+            if (account != null) {
+                account.reserve(envelope.getEncodedSize());
+            }
         }
     }
 
@@ -1045,4 +1147,56 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
     public JmsLocalTransactionContext getTransactionContext() {
         return transactionContext;
     }
+
+    /**
+     * Tracks the outcome of an asynchronous send.  When the sender supplied a completion
+     * listener it is notified of the result, otherwise only a failure is reported and it
+     * is routed to the Connection's ExceptionListener.
+     */
+    private final class SendCompletion implements AsyncResult<Void> {
+
+        private final Message message;
+        private final JmsCompletionListener listener;
+        private final JmsTransactionId transactionId;
+        private final AtomicBoolean complete = new AtomicBoolean();
+
+        public SendCompletion(Message message, JmsCompletionListener listener, JmsTransactionId transactionId) {
+            this.message = message;
+            this.listener = listener;
+            this.transactionId = transactionId;
+        }
+
+        @Override
+        public void onFailure(Throwable result) {
+            if (complete.compareAndSet(false, true)) {
+                // A transaction that lost a message must not be allowed to commit.
+                if (transactionId != null) {
+                    transactionContext.markRollbackOnly(transactionId, result);
+                }
+
+                if (listener != null) {
+                    connection.onSendCompleted(message, listener, result);
+                } else {
+                    connection.onAsyncException(result);
+                }
+            }
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+            if (complete.compareAndSet(false, true) && listener != null) {
+                connection.onSendCompleted(message, listener, null);
+            }
+        }
+
+        @Override
+        public void onSuccess() {
+            onSuccess(null);
+        }
+
+        @Override
+        public boolean isComplete() {
+            return complete.get();
+        }
+    }
 }
@@ -24,8 +24,9 @@ import io.hawtjms.jms.meta.JmsConsumerId;
 public class JmsInboundMessageDispatch {
 
     private JmsConsumerId consumerId;
-    private JmsMessage message;
+    private volatile JmsMessage message;
     private Object providerHint;
+    private int encodedSize;
 
     public JmsMessage getMessage() {
         return message;
@@ -51,7 +52,20 @@ public class JmsInboundMessageDispatch {
         this.providerHint = hint;
     }
 
+    /**
+     * @return the size in bytes of the message as it was received, or zero if not known.
+     */
+    public int getEncodedSize() {
+        return encodedSize;
+    }
+
+    public void setEncodedSize(int encodedSize) {
+        this.encodedSize = encodedSize;
+    }
+
     public void onMessageRedelivered() {
+        // The application may still hold the instance delivered last time.
+        this.message.copyOnWrite();
         this.message.incrementRedeliveryCount();
     }
 }
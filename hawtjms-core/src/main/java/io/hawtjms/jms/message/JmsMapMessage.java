@@ -98,7 +98,7 @@ public class JmsMapMessage extends JmsMessage implements MapMessage {
 
     public void copy(JmsMapMessage other) throws JMSException {
         super.copy(other);
-        this.map = other.map;
+        this.map = new HashMap<String, Object>(other.map);
     }
 
     /**
@@ -46,6 +46,7 @@ public class JmsMessage implements javax.jms.Message {
 
     protected transient Callable<Void> acknowledgeCallback;
     protected transient JmsConnection connection;
+    protected transient JmsInboundMessageDispatch sharedWith;
 
     protected final JmsMessageFacade facade;
     protected boolean readOnlyBody;
@@ -68,6 +69,39 @@ public class JmsMessage implements javax.jms.Message {
         this.connection = other.connection;
     }
 
+    /**
+     * Hands this received message to the application without copying it.  The message stays
+     * shared with the envelope it was delivered in until the first change is made to it, at
+     * which point the envelope is moved onto a private copy so that acknowledgement and any
+     * redelivery still see the message as it was received.
+     *
+     * @param envelope
+     *        the envelope that this message was delivered in.
+     *
+     * @return this message instance.
+     */
+    public JmsMessage share(JmsInboundMessageDispatch envelope) {
+        this.sharedWith = envelope;
+        return this;
+    }
+
+    /**
+     * Called before any change is made to this message, if the message is still shared
+     * with its delivery envelope the envelope is given its own copy first.
+     */
+    protected void copyOnWrite() {
+        JmsInboundMessageDispatch envelope = sharedWith;
+        if (envelope != null) {
+            sharedWith = null;
+            try {
+                envelope.setMessage(copy());
+            } catch (JMSException e) {
+                // A received message has no pending writes to store so this is not expected.
+                throw new IllegalStateException("Failed to copy a shared message", e);
+            }
+        }
+    }
+
     @Override
     public int hashCode() {
         String id = getJMSMessageID();
@@ -106,6 +140,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void clearBody() throws JMSException {
+        copyOnWrite();
         readOnlyBody = false;
     }
 
@@ -131,6 +166,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSMessageID(String value) {
+        copyOnWrite();
         if (value != null) {
             JmsMessageId id = new JmsMessageId(value);
             facade.setMessageId(id);
@@ -140,6 +176,7 @@ public class JmsMessage implements javax.jms.Message {
     }
 
     public void setJMSMessageID(JmsMessageId messageId) {
+        copyOnWrite();
         facade.setMessageId(messageId);
     }
 
@@ -150,6 +187,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSTimestamp(long timestamp) {
+        copyOnWrite();
         facade.setTimestamp(timestamp);
     }
 
@@ -160,6 +198,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSCorrelationID(String correlationId) {
+        copyOnWrite();
         facade.setCorrelationId(correlationId);
     }
 
@@ -170,6 +209,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSCorrelationIDAsBytes(byte[] correlationId) throws JMSException {
+        copyOnWrite();
         facade.setCorrelationId(decodeString(correlationId));
     }
 
@@ -180,6 +220,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSReplyTo(Destination destination) throws JMSException {
+        copyOnWrite();
         facade.setReplyTo(JmsMessageTransformation.transformDestination(connection, destination));
     }
 
@@ -190,6 +231,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSDestination(Destination destination) throws JMSException {
+        copyOnWrite();
         facade.setDestination(JmsMessageTransformation.transformDestination(connection, destination));
     }
 
@@ -200,6 +242,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSDeliveryMode(int mode) {
+        copyOnWrite();
         facade.setPersistent(mode == DeliveryMode.PERSISTENT);
     }
 
@@ -220,6 +263,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSType(String type) {
+        copyOnWrite();
         facade.setType(type);
     }
 
@@ -230,6 +274,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSExpiration(long expiration) {
+        copyOnWrite();
         facade.setExpiration(expiration);
     }
 
@@ -240,6 +285,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSPriority(int priority) {
+        copyOnWrite();
         byte scaled = 0;
 
         if (priority < 0) {
@@ -255,6 +301,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void clearProperties() {
+        copyOnWrite();
         facade.clearProperties();
     }
 
@@ -292,6 +339,7 @@ public class JmsMessage implements javax.jms.Message {
      * @throws IOException if an error occurs while accessing the Message properties.
      */
     public void setProperty(String key, Object value) throws IOException {
+        copyOnWrite();
         this.facade.setProperty(key, value);
     }
 
@@ -487,6 +535,7 @@ public class JmsMessage implements javax.jms.Message {
         }
 
         checkValidObject(value);
+        copyOnWrite();
         PropertySetter setter = JMS_PROPERTY_SETERS.get(name);
 
         if (setter != null && value != null) {
@@ -720,6 +769,7 @@ public class JmsMessage implements javax.jms.Message {
     }
 
     public void setRedelivered(boolean redelivered) {
+        copyOnWrite();
         if (redelivered) {
             if (!isRedelivered()) {
                 facade.setRedeliveryCounter(1);
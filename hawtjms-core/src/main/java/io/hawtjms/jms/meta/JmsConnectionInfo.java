@@ -16,6 +16,8 @@
  */
 package io.hawtjms.jms.meta;
 
+import io.hawtjms.provider.BlockingRequest;
+import io.hawtjms.util.MemoryGovernor;
 import io.hawtjms.util.ToStringSupport;
 
 /**
@@ -42,6 +44,9 @@ public final class JmsConnectionInfo implements JmsResource, Comparable<JmsConne
     public long requestTimeout = DEFAULT_REQUEST_TIMEOUT;
     public long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
     public long closeTimeout = DEFAULT_CLOSE_TIMEOUT;
+    private BlockingRequest.WaitStrategy requestWaitStrategy = BlockingRequest.DEFAULT_WAIT_STRATEGY;
+    private long requestSpinTime = BlockingRequest.DEFAULT_SPIN_TIME;
+    private transient MemoryGovernor.Account memoryAccount;
     private String queuePrefix = "/queue/";
     private String topicPrefix = "/topic/";
     private String tempQueuePrefix = "/temp-queue/";
@@ -67,6 +72,9 @@ public final class JmsConnectionInfo implements JmsResource, Comparable<JmsConne
         copy.sendTimeout = sendTimeout;
         copy.requestTimeout = requestTimeout;
         copy.closeTimeout = closeTimeout;
+        copy.requestWaitStrategy = requestWaitStrategy;
+        copy.requestSpinTime = requestSpinTime;
+        copy.memoryAccount = memoryAccount;
         copy.queuePrefix = queuePrefix;
         copy.topicPrefix = topicPrefix;
         copy.tempQueuePrefix = tempQueuePrefix;
@@ -189,6 +197,34 @@ public final class JmsConnectionInfo implements JmsResource, Comparable<JmsConne
         this.requestTimeout = requestTimeout;
     }
 
+    public BlockingRequest.WaitStrategy getRequestWaitStrategy() {
+        return requestWaitStrategy;
+    }
+
+    public void setRequestWaitStrategy(BlockingRequest.WaitStrategy requestWaitStrategy) {
+        this.requestWaitStrategy = requestWaitStrategy;
+    }
+
+    public long getRequestSpinTime() {
+        return requestSpinTime;
+    }
+
+    public void setRequestSpinTime(long requestSpinTime) {
+        this.requestSpinTime = requestSpinTime;
+    }
+
+    /**
+     * @return the account that bytes held by this connection are charged to, or null
+     *         if the client's memory use is not governed.
+     */
+    public MemoryGovernor.Account getMemoryAccount() {
+        return memoryAccount;
+    }
+
+    public void setMemoryAccount(MemoryGovernor.Account memoryAccount) {
+        this.memoryAccount = memoryAccount;
+    }
+
     public boolean isWatchRemoteDestinations() {
         return watchRemoteDestinations;
     }
@@ -24,6 +24,11 @@ public final class JmsConsumerInfo implements JmsResource, Comparable<JmsConsume
     protected final JmsConsumerId consumerId;
     protected JmsDestination destination;
     protected int prefetchSize;
+    protected int creditRefillThreshold = 100;
+    protected boolean adaptivePrefetch;
+    protected long adaptiveTargetLatency;
+    protected int maxPrefetchSize = Short.MAX_VALUE;
+    protected long maxPrefetchBytes;
     protected boolean browser;
     protected String selector;
     protected String clientId;
@@ -31,6 +36,9 @@ public final class JmsConsumerInfo implements JmsResource, Comparable<JmsConsume
     protected boolean noLocal;
     protected int acknowledgementMode;
 
+    // Updated by the provider when the prefetch window is resized.
+    private transient volatile int currentPrefetchSize;
+
     // Can be used to track the last consumed message.
     private transient long lastDeliveredSequenceId;
 
@@ -51,6 +59,12 @@ public final class JmsConsumerInfo implements JmsResource, Comparable<JmsConsume
     private void copy(JmsConsumerInfo info) {
         info.destination = destination;
         info.prefetchSize = prefetchSize;
+        info.creditRefillThreshold = creditRefillThreshold;
+        info.adaptivePrefetch = adaptivePrefetch;
+        info.adaptiveTargetLatency = adaptiveTargetLatency;
+        info.maxPrefetchSize = maxPrefetchSize;
+        info.maxPrefetchBytes = maxPrefetchBytes;
+        info.currentPrefetchSize = currentPrefetchSize;
         info.browser = browser;
         info.selector = selector;
         info.clientId = clientId;
@@ -89,6 +103,59 @@ public final class JmsConsumerInfo implements JmsResource, Comparable<JmsConsume
 
     public void setPrefetchSize(int prefetchSize) {
         this.prefetchSize = prefetchSize;
+        this.currentPrefetchSize = prefetchSize;
+    }
+
+    /**
+     * @return the prefetch window the provider is currently granting, this differs from
+     *         the configured prefetch size only when adaptive prefetch is enabled.
+     */
+    public int getCurrentPrefetchSize() {
+        return currentPrefetchSize;
+    }
+
+    public void setCurrentPrefetchSize(int currentPrefetchSize) {
+        this.currentPrefetchSize = currentPrefetchSize;
+    }
+
+    public boolean isAdaptivePrefetch() {
+        return adaptivePrefetch;
+    }
+
+    public void setAdaptivePrefetch(boolean adaptivePrefetch) {
+        this.adaptivePrefetch = adaptivePrefetch;
+    }
+
+    public long getAdaptiveTargetLatency() {
+        return adaptiveTargetLatency;
+    }
+
+    public void setAdaptiveTargetLatency(long adaptiveTargetLatency) {
+        this.adaptiveTargetLatency = adaptiveTargetLatency;
+    }
+
+    public int getMaxPrefetchSize() {
+        return maxPrefetchSize;
+    }
+
+    public void setMaxPrefetchSize(int maxPrefetchSize) {
+        this.maxPrefetchSize = maxPrefetchSize;
+    }
+
+    public long getMaxPrefetchBytes() {
+        return maxPrefetchBytes;
+    }
+
+    public void setMaxPrefetchBytes(long maxPrefetchBytes) {
+        this.maxPrefetchBytes = maxPrefetchBytes;
+    }
+
+    public int getCreditRefillThreshold() {
+        return creditRefillThreshold;
+    }
+
+    public void setCreditRefillThreshold(int creditRefillThreshold) {
+        this.creditRefillThreshold = creditRefillThreshold;
     }
 
     public String getSelector() {
@@ -18,13 +18,22 @@ package io.hawtjms.provider;
 
 import io.hawtjms.jms.meta.JmsConsumerId;
 import io.hawtjms.jms.meta.JmsSessionId;
+import io.hawtjms.transports.EventLoopTransport;
+import io.hawtjms.transports.NioTcpTransport;
+import io.hawtjms.transports.TcpTransport;
+import io.hawtjms.transports.Transport;
 import io.hawtjms.util.IOExceptionSupport;
+import io.hawtjms.util.MemoryGovernor;
+import io.hawtjms.util.PropertyUtil;
+import io.hawtjms.util.URISupport;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.jms.JMSException;
@@ -39,22 +48,32 @@ public abstract class AbstractAsyncProvider implements AsyncProvider {
 
     protected final URI remoteURI;
     protected final AtomicBoolean closed = new AtomicBoolean();
-    protected final ScheduledExecutorService serializer;
+    protected final ExecutorService serializer;
 
     protected ProviderListener listener;
+    protected MemoryGovernor.Account memoryAccount;
+
+    private final Object sendGate = new Object();
+    private boolean sendsPaused;
 
     public AbstractAsyncProvider(URI remoteURI) {
         this.remoteURI = remoteURI;
 
-        this.serializer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        this.serializer = ProviderSerializer.create(getSerializerOptions(remoteURI), new ThreadFactory() {
 
             @Override
             public Thread newThread(Runnable runner) {
                 Thread serial = new Thread(runner);
                 serial.setDaemon(true);
-                serial.setName(toString());
+                serial.setName(AbstractAsyncProvider.this.toString());
                 return serial;
             }
+        }, new Runnable() {
+
+            @Override
+            public void run() {
+                onSerializerIdle();
+            }
         });
     }
 
@@ -103,12 +122,175 @@ public abstract class AbstractAsyncProvider implements AsyncProvider {
     }
 
     public void fireProviderException(Throwable ex) {
+        // Don't leave senders blocked on a Transport that is no longer usable.
+        resumeSends();
+
         ProviderListener listener = this.listener;
         if (listener != null) {
             listener.onConnectionFailure(IOExceptionSupport.create(ex));
         }
     }
 
+    /**
+     * Called from the serializer thread after a task completes and no other task is ready
+     * to run.  Subclasses use this to flush any data their Transport has batched so that
+     * all the writes made by a run of back to back tasks go out together.
+     */
+    protected void onSerializerIdle() {
+    }
+
+    /**
+     * Applies any options found in the remote URI that carry the "transport." prefix to
+     * the given Transport instance, e.g. amqp://host:port?transport.eventLoopThreads=4
+     *
+     * @param transport
+     *        the Transport instance that should be configured.
+     *
+     * @throws IOException if the URI options cannot be parsed.
+     * @throws IllegalArgumentException if an option could not be applied to the Transport.
+     */
+    protected void configureTransport(Transport transport) throws IOException {
+        Map<String, String> options = null;
+        try {
+            options = new HashMap<String, String>(URISupport.parseParameters(remoteURI));
+        } catch (Exception e) {
+            throw IOExceptionSupport.create(e);
+        }
+
+        Map<String, String> transportOptions = PropertyUtil.filterProperties(options, "transport.");
+        if (!PropertyUtil.setProperties(transport, transportOptions)) {
+            String msg = ""
+                + " Not all transport options could be set on the " + transport.getClass().getSimpleName() + "."
+                + " Check the options are spelled correctly."
+                + " Given parameters=[" + transportOptions + "]."
+                + " This Provider cannot be started.";
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    /**
+     * Called once the Transport has connected, when the Provider was configured to use the
+     * "transport" serializer type all further work is run on the Transport's event loop.
+     *
+     * @param transport
+     *        the newly connected Transport instance.
+     *
+     * @throws IOException if the serializer requires an event loop the Transport lacks.
+     */
+    protected void bindSerializer(Transport transport) throws IOException {
+        if (serializer instanceof TransportSerializer) {
+            if (!(transport instanceof EventLoopTransport)) {
+                throw new IOException("The " + transport.getClass().getSimpleName() +
+                                      " cannot be used with the transport serializer type");
+            }
+
+            ((TransportSerializer) serializer).bind((EventLoopTransport) transport);
+        }
+    }
+
+    /**
+     * Records the memory account of the connection this Provider serves and charges the
+     * Transport's write queue to it, called once the connection information arrives.
+     *
+     * @param transport
+     *        the Transport in use, may be null if not yet created.
+     * @param account
+     *        the account to charge, or null if memory is not governed.
+     */
+    protected void bindMemoryAccount(Transport transport, MemoryGovernor.Account account) {
+        this.memoryAccount = account;
+        if (transport instanceof TcpTransport) {
+            ((TcpTransport) transport).setMemoryAccount(account);
+        } else if (transport instanceof NioTcpTransport) {
+            ((NioTcpTransport) transport).setMemoryAccount(account);
+        }
+    }
+
+    /**
+     * @return the account that bytes held by this Provider are charged to, or null.
+     */
+    public MemoryGovernor.Account getMemoryAccount() {
+        return memoryAccount;
+    }
+
+    /**
+     * Extracts the options carrying the "serializer." prefix from the given URI.
+     *
+     * @param remoteURI
+     *        the URI whose query options are examined.
+     *
+     * @return the serializer options with their prefix removed.
+     *
+     * @throws IllegalArgumentException if the URI options cannot be parsed.
+     */
+    protected static Map<String, String> getSerializerOptions(URI remoteURI) {
+        try {
+            Map<String, String> options = new HashMap<String, String>(URISupport.parseParameters(remoteURI));
+            return PropertyUtil.filterProperties(options, ProviderSerializer.OPTION_PREFIX);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid Provider URI: " + remoteURI, e);
+        }
+    }
+
+    /**
+     * Stops new send requests from being accepted, callers of {@link #awaitSendsResumed(long)}
+     * will block until {@link #resumeSends()} is called or the Provider is closed.  Used by
+     * subclasses when their Transport reports that its write queue is full.
+     */
+    protected void pauseSends() {
+        synchronized (sendGate) {
+            sendsPaused = true;
+        }
+    }
+
+    /**
+     * Allows send requests to be accepted again and wakes any blocked senders.
+     */
+    protected void resumeSends() {
+        synchronized (sendGate) {
+            sendsPaused = false;
+            sendGate.notifyAll();
+        }
+    }
+
+    /**
+     * Called from the sending thread before a send request is accepted, blocks while
+     * sends are paused.
+     *
+     * @param timeout
+     *        the time in milliseconds to wait for sends to resume, a negative value
+     *        means wait forever.
+     *
+     * @throws IOException if the timeout expires, the wait is interrupted or the Provider closes.
+     */
+    protected void awaitSendsResumed(long timeout) throws IOException {
+        synchronized (sendGate) {
+            if (!sendsPaused) {
+                return;
+            }
+
+            long deadline = timeout >= 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+            try {
+                while (sendsPaused && !closed.get()) {
+                    if (timeout < 0) {
+                        sendGate.wait();
+                    } else {
+                        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (remaining <= 0) {
+                            throw new IOException("Timed out waiting for the Transport write queue to drain");
+                        }
+                        sendGate.wait(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw IOExceptionSupport.create(e);
+            }
+        }
+
+        checkClosed();
+    }
+
     protected void checkClosed() throws IOException {
         if (closed.get()) {
             throw new IOException("The Provider is already closed");
@@ -26,6 +26,7 @@ import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 import javax.jms.JMSException;
 
@@ -203,6 +204,27 @@ public interface AsyncProvider {
     void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType, AsyncResult<Void> request)
         throws IOException, JMSException;
 
+    /**
+     * Called to acknowledge a batch of messages in a single Provider operation.  The
+     * envelopes are acknowledged in the order given and may belong to different consumers
+     * of the same Session.
+     *
+     * The provider is required to implement this method without throwing any JMS or other
+     * exceptions such as UnsupportedOperationException.
+     *
+     * @param envelopes
+     *        The message dispatch envelopes of the Messages being acknowledged.
+     * @param ackType
+     *        The type of acknowledgment being done.
+     * @param request
+     *        The request object that should be signaled once the whole batch is done.
+     *
+     * @throws IOException if an error occurs or the Provider is already closed.
+     * @throws JMSException if an error occurs due to JMS violation such as unmatched ack.
+     */
+    void acknowledge(List<JmsInboundMessageDispatch> envelopes, ACK_TYPE ackType, AsyncResult<Void> request)
+        throws IOException, JMSException;
+
     /**
      * Called to commit an open transaction.
      *
@@ -26,6 +26,7 @@ import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 import javax.jms.JMSException;
 
@@ -100,6 +101,11 @@ public class AsyncProviderWrapper<E extends AsyncProvider> implements AsyncProvi
         next.acknowledge(envelope, ackType, request);
     }
 
+    @Override
+    public void acknowledge(List<JmsInboundMessageDispatch> envelopes, ACK_TYPE ackType, AsyncResult<Void> request) throws IOException, JMSException {
+        next.acknowledge(envelopes, ackType, request);
+    }
+
     @Override
     public void commit(JmsSessionId sessionId, AsyncResult<Void> request) throws IOException, JMSException, UnsupportedOperationException {
         next.commit(sessionId, request);
@@ -26,6 +26,7 @@ import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 import javax.jms.JMSException;
 
@@ -149,6 +150,21 @@ public interface BlockingProvider {
      */
     void send(JmsOutboundMessageDispatch envelope) throws IOException, JMSException;
 
+    /**
+     * Sends the JmsMessage contained in the out-bound dispatch envelope without waiting
+     * for the send to complete.  The given request is notified from the Provider's own
+     * thread once the send completes or fails.
+     *
+     * @param envelope
+     *        the message envelope containing the JmsMessage to send.
+     * @param request
+     *        the AsyncResult that is signaled when the send completes.
+     *
+     * @throws IOException if an error occurs or the Provider is already closed.
+     * @throws JMSException if an error that maps to JMS occurs such as not authorized.
+     */
+    void send(JmsOutboundMessageDispatch envelope, AsyncResult<Void> request) throws IOException, JMSException;
+
     /**
      * Called to acknowledge all messages that have been delivered in a given session.
      *
@@ -180,6 +196,36 @@ public interface BlockingProvider {
      */
     void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType) throws IOException, JMSException;
 
+    /**
+     * Acknowledges a batch of messages with a single call and waits for the acknowledgment
+     * of the whole batch to complete.
+     *
+     * @param envelopes
+     *        the message dispatch envelopes of the messages being acknowledged.
+     * @param ackType
+     *        the type of acknowledgment being done.
+     *
+     * @throws IOException if an error occurs or the Provider is already closed.
+     * @throws JMSException if an error occurs due to JMS violation such as unmatched ack.
+     */
+    void acknowledge(List<JmsInboundMessageDispatch> envelopes, ACK_TYPE ackType) throws IOException, JMSException;
+
+    /**
+     * Acknowledges a batch of messages without waiting for the acknowledgment to complete,
+     * the given request is signaled from the Provider's thread once the batch is done.
+     *
+     * @param envelopes
+     *        the message dispatch envelopes of the messages being acknowledged.
+     * @param ackType
+     *        the type of acknowledgment being done.
+     * @param request
+     *        the AsyncResult that is signaled when the acknowledgment completes.
+     *
+     * @throws IOException if an error occurs or the Provider is already closed.
+     * @throws JMSException if an error occurs due to JMS violation such as unmatched ack.
+     */
+    void acknowledge(List<JmsInboundMessageDispatch> envelopes, ACK_TYPE ackType, AsyncResult<Void> request) throws IOException, JMSException;
+
     /**
      * Called to commit an open transaction.
      *
@@ -283,4 +329,12 @@ public interface BlockingProvider {
      */
     ProviderListener getProviderListener();
 
+    /**
+     * Gets the number of requests that were failed because no response arrived within the
+     * configured send or request timeout.
+     *
+     * @return the number of requests failed on timeout since this Provider was created.
+     */
+    long getTimedOutRequestCount();
+
 }
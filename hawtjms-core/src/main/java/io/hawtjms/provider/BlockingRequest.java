@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider;
+
+import io.hawtjms.util.IOExceptionSupport;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A reusable request for a blocking Provider operation.
+ *
+ * Unlike {@link ProviderRequest} no latch is allocated for each operation, the waiting
+ * thread is recorded only once it is about to park so a response that arrives while the
+ * caller is still spinning completes the request without waking any thread.  Once the
+ * request has completed it can be {@link #reset()} and used again by the same thread.
+ *
+ * Each use of the request is a new generation, the Provider should be given the one-shot
+ * {@link #handle()} for the current generation rather than the request itself.  A handle
+ * completes the request at most once and only while its generation is current, so an
+ * answer that arrives twice or after the request was reused is ignored.
+ */
+public class BlockingRequest implements AsyncResult<Void> {
+
+    /**
+     * The ways in which a caller can wait for the request to complete.
+     */
+    public enum WaitStrategy {
+
+        /**
+         * Park the waiting thread right away.
+         */
+        PARK,
+
+        /**
+         * Spin for the configured time yielding the CPU on each pass, then park.
+         */
+        SPIN_THEN_PARK,
+
+        /**
+         * Spin for the configured time without yielding the CPU, then park.
+         */
+        BUSY_SPIN
+    }
+
+    public static final WaitStrategy DEFAULT_WAIT_STRATEGY = WaitStrategy.PARK;
+    public static final long DEFAULT_SPIN_TIME = 50;
+
+    private static final int PENDING = 0;
+    private static final int COMPLETING = 1;
+    private static final int SUCCEEDED = 2;
+    private static final int FAILED = 3;
+
+    // The generation in the upper bits and the status of that generation in the lower two.
+    private final AtomicLong state = new AtomicLong();
+    private volatile Thread waiter;
+    private Throwable error;
+
+    @Override
+    public boolean isComplete() {
+        return status(state.get()) >= SUCCEEDED;
+    }
+
+    /**
+     * Completes the current generation of the request with the given failure.
+     */
+    @Override
+    public void onFailure(Throwable result) {
+        complete(generation(state.get()), FAILED, result);
+    }
+
+    /**
+     * Completes the current generation of the request successfully.
+     */
+    @Override
+    public void onSuccess(Void result) {
+        complete(generation(state.get()), SUCCEEDED, null);
+    }
+
+    @Override
+    public void onSuccess() {
+        onSuccess(null);
+    }
+
+    /**
+     * @return a one-shot AsyncResult that completes only the current generation of this request.
+     */
+    public AsyncResult<Void> handle() {
+        return new Handle(generation(state.get()));
+    }
+
+    /**
+     * Waits for the request to complete.
+     *
+     * @param strategy
+     *        the manner in which to wait for the response.
+     * @param spinTime
+     *        the time in microseconds to spin before parking, ignored by PARK.
+     *
+     * @throws IOException if the request failed or the wait was interrupted.
+     */
+    public void await(WaitStrategy strategy, long spinTime) throws IOException {
+        if (!isComplete() && strategy != WaitStrategy.PARK && spinTime > 0) {
+            long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(spinTime);
+            boolean yield = strategy == WaitStrategy.SPIN_THEN_PARK;
+            while (!isComplete() && System.nanoTime() - deadline < 0) {
+                if (yield) {
+                    Thread.yield();
+                }
+            }
+        }
+
+        if (!isComplete()) {
+            waiter = Thread.currentThread();
+            try {
+                while (!isComplete()) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw IOExceptionSupport.create(new InterruptedException());
+                    }
+                }
+            } finally {
+                waiter = null;
+            }
+        }
+
+        if (status(state.get()) == FAILED) {
+            throw IOExceptionSupport.create(error);
+        }
+    }
+
+    /**
+     * Returns a completed request to its initial state so it can be used again, must not
+     * be called while the request is still outstanding.
+     */
+    public void reset() {
+        error = null;
+        state.set((generation(state.get()) + 1) << 2 | PENDING);
+    }
+
+    /*
+     * Only the first completion of a generation that is still current wins, the error is
+     * published by the volatile write of the final status.
+     */
+    private boolean complete(long generation, int result, Throwable cause) {
+        if (!state.compareAndSet(generation << 2 | PENDING, generation << 2 | COMPLETING)) {
+            return false;
+        }
+
+        error = cause;
+        state.set(generation << 2 | result);
+        wakeWaiter();
+        return true;
+    }
+
+    private static long generation(long state) {
+        return state >>> 2;
+    }
+
+    private static int status(long state) {
+        return (int) (state & 3);
+    }
+
+    private void wakeWaiter() {
+        Thread waiter = this.waiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private final class Handle implements AsyncResult<Void> {
+
+        private final long generation;
+
+        public Handle(long generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void onFailure(Throwable result) {
+            complete(generation, FAILED, result);
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+            complete(generation, SUCCEEDED, null);
+        }
+
+        @Override
+        public void onSuccess() {
+            onSuccess(null);
+        }
+
+        @Override
+        public boolean isComplete() {
+            long current = state.get();
+            return generation(current) != generation || status(current) >= SUCCEEDED;
+        }
+    }
+}
@@ -19,13 +19,19 @@ package io.hawtjms.provider;
 import io.hawtjms.jms.message.JmsInboundMessageDispatch;
 import io.hawtjms.jms.message.JmsMessageFactory;
 import io.hawtjms.jms.message.JmsOutboundMessageDispatch;
+import io.hawtjms.jms.meta.JmsConnectionInfo;
 import io.hawtjms.jms.meta.JmsConsumerId;
 import io.hawtjms.jms.meta.JmsResource;
 import io.hawtjms.jms.meta.JmsSessionId;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
+import io.hawtjms.util.HashedWheelTimer;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jms.JMSException;
 
@@ -33,10 +39,27 @@ import javax.jms.JMSException;
  * Provides a simple Provider Facade that allows a ProtocolProvider to be used
  * without any additional capabilities wrapped around it such as Failover or
  * Discovery.  All methods are executed as blocking operations.
+ *
+ * The send and request timeouts of the JmsConnectionInfo used to create the connection
+ * are enforced here, once set every outstanding request is registered with the shared
+ * {@link HashedWheelTimer} and is failed if no answer arrives before its timeout.
+ *
+ * Blocking operations reuse a {@link BlockingRequest} held for the calling thread rather
+ * than creating a new request to wait on for each operation.  The way the caller waits is
+ * set by the request wait strategy of the JmsConnectionInfo.
  */
 public class DefaultBlockingProvider implements BlockingProvider {
 
     private final AsyncProvider next;
+    private final AtomicLong timedOutRequests = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ThreadLocal<BlockingRequest> requests = new ThreadLocal<BlockingRequest>();
+
+    private volatile long sendTimeout = JmsConnectionInfo.DEFAULT_SEND_TIMEOUT;
+    private volatile long requestTimeout = JmsConnectionInfo.DEFAULT_REQUEST_TIMEOUT;
+    private volatile HashedWheelTimer timer;
+    private volatile BlockingRequest.WaitStrategy waitStrategy = BlockingRequest.DEFAULT_WAIT_STRATEGY;
+    private volatile long spinTime = BlockingRequest.DEFAULT_SPIN_TIME;
 
     public DefaultBlockingProvider(AsyncProvider protocol) {
         this.next = protocol;
@@ -54,7 +77,16 @@ public class DefaultBlockingProvider implements BlockingProvider {
 
     @Override
     public void close() {
-        next.close();
+        try {
+            next.close();
+        } finally {
+            if (closed.compareAndSet(false, true)) {
+                synchronized (this) {
+                    HashedWheelTimer.release(timer);
+                    timer = null;
+                }
+            }
+        }
     }
 
     @Override
@@ -63,80 +95,166 @@ public class DefaultBlockingProvider implements BlockingProvider {
     }
 
     @Override
-    public void create(JmsResource resource) throws IOException, JMSException, UnsupportedOperationException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.create(resource, request);
-        request.getResponse();
+    public void create(final JmsResource resource) throws IOException, JMSException, UnsupportedOperationException {
+        if (resource instanceof JmsConnectionInfo) {
+            JmsConnectionInfo connectionInfo = (JmsConnectionInfo) resource;
+            sendTimeout = connectionInfo.getSendTimeout();
+            requestTimeout = connectionInfo.getRequestTimeout();
+            waitStrategy = connectionInfo.getRequestWaitStrategy();
+            spinTime = connectionInfo.getRequestSpinTime();
+        }
+
+        request(requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.create(resource, request);
+            }
+        });
     }
 
     @Override
-    public void start(JmsResource resource) throws IOException, JMSException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.start(resource, request);
-        request.getResponse();
+    public void start(final JmsResource resource) throws IOException, JMSException {
+        request(requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.start(resource, request);
+            }
+        });
     }
 
     @Override
-    public void destroy(JmsResource resource) throws IOException, JMSException, UnsupportedOperationException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.destroy(resource, request);
-        request.getResponse();
+    public void destroy(final JmsResource resource) throws IOException, JMSException, UnsupportedOperationException {
+        request(requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.destroy(resource, request);
+            }
+        });
     }
 
     @Override
-    public void send(JmsOutboundMessageDispatch envelope) throws IOException, JMSException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.send(envelope, request);
-        request.getResponse();
+    public void send(final JmsOutboundMessageDispatch envelope) throws IOException, JMSException {
+        request(sendTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.send(envelope, request);
+            }
+        });
     }
 
     @Override
-    public void acknowledge(JmsSessionId sessionId) throws IOException, JMSException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.acknowledge(sessionId, request);
-        request.getResponse();
+    public void send(final JmsOutboundMessageDispatch envelope, AsyncResult<Void> request) throws IOException, JMSException {
+        dispatch(request, sendTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.send(envelope, request);
+            }
+        });
     }
 
     @Override
-    public void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType) throws IOException, JMSException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.acknowledge(envelope, ackType, request);
-        request.getResponse();
+    public void acknowledge(final JmsSessionId sessionId) throws IOException, JMSException {
+        request(requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.acknowledge(sessionId, request);
+            }
+        });
     }
 
     @Override
-    public void commit(JmsSessionId sessionId) throws IOException, JMSException, UnsupportedOperationException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.commit(sessionId, request);
-        request.getResponse();
+    public void acknowledge(final JmsInboundMessageDispatch envelope, final ACK_TYPE ackType) throws IOException, JMSException {
+        request(requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.acknowledge(envelope, ackType, request);
+            }
+        });
     }
 
     @Override
-    public void rollback(JmsSessionId sessionId) throws IOException, JMSException, UnsupportedOperationException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.rollback(sessionId, request);
-        request.getResponse();
+    public void acknowledge(final List<JmsInboundMessageDispatch> envelopes, final ACK_TYPE ackType) throws IOException, JMSException {
+        request(requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.acknowledge(envelopes, ackType, request);
+            }
+        });
     }
 
     @Override
-    public void recover(JmsSessionId sessionId) throws IOException, UnsupportedOperationException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.recover(sessionId, request);
-        request.getResponse();
+    public void acknowledge(final List<JmsInboundMessageDispatch> envelopes, final ACK_TYPE ackType, AsyncResult<Void> request) throws IOException, JMSException {
+        dispatch(request, requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.acknowledge(envelopes, ackType, request);
+            }
+        });
     }
 
     @Override
-    public void unsubscribe(String subscription) throws IOException, JMSException, UnsupportedOperationException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.unsubscribe(subscription, request);
-        request.getResponse();
+    public void commit(final JmsSessionId sessionId) throws IOException, JMSException, UnsupportedOperationException {
+        request(requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.commit(sessionId, request);
+            }
+        });
     }
 
     @Override
-    public void pull(JmsConsumerId consumerId, long timeout) throws IOException, UnsupportedOperationException {
-        ProviderRequest<Void> request = new ProviderRequest<Void>();
-        next.pull(consumerId, timeout, request);
-        request.getResponse();
+    public void rollback(final JmsSessionId sessionId) throws IOException, JMSException, UnsupportedOperationException {
+        request(requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.rollback(sessionId, request);
+            }
+        });
+    }
+
+    @Override
+    public void recover(final JmsSessionId sessionId) throws IOException, UnsupportedOperationException {
+        request(requestTimeout, new ProviderCall<IOException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException {
+                next.recover(sessionId, request);
+            }
+        });
+    }
+
+    @Override
+    public void unsubscribe(final String subscription) throws IOException, JMSException, UnsupportedOperationException {
+        request(requestTimeout, new ProviderCall<JMSException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException, JMSException {
+                next.unsubscribe(subscription, request);
+            }
+        });
+    }
+
+    @Override
+    public void pull(final JmsConsumerId consumerId, final long timeout) throws IOException, UnsupportedOperationException {
+        // The pull carries its own timeout which the wrapped Provider enforces.
+        request(-1, new ProviderCall<IOException>() {
+
+            @Override
+            public void invoke(AsyncResult<Void> request) throws IOException {
+                next.pull(consumerId, timeout, request);
+            }
+        });
     }
 
     @Override
@@ -154,7 +272,212 @@ public class DefaultBlockingProvider implements BlockingProvider {
         return next.getProviderListener();
     }
 
+    @Override
+    public long getTimedOutRequestCount() {
+        return timedOutRequests.get();
+    }
+
     public AsyncProvider getNext() {
         return next;
     }
+
+    /**
+     * Performs a blocking operation using the calling thread's reusable request, the
+     * operation is given a one-shot handle to that request which is watched for timeout.
+     *
+     * @param timeout
+     *        the timeout in milliseconds, a negative value means no timeout.
+     * @param call
+     *        makes the call to the wrapped Provider.
+     */
+    private <E extends Exception> void request(long timeout, ProviderCall<E> call) throws IOException, E {
+        BlockingRequest request = acquireRequest();
+        dispatch(request.handle(), timeout, call);
+        awaitResponse(request);
+    }
+
+    /**
+     * Passes an asynchronous request to the wrapped Provider watched for timeout, if the
+     * Provider refuses the request by throwing the timeout is cancelled again.
+     *
+     * @param request
+     *        the AsyncResult to complete once the operation is done.
+     * @param timeout
+     *        the timeout in milliseconds, a negative value means no timeout.
+     * @param call
+     *        makes the call to the wrapped Provider.
+     */
+    private <E extends Exception> void dispatch(AsyncResult<Void> request, long timeout, ProviderCall<E> call) throws IOException, E {
+        AsyncResult<Void> watched = watch(request, timeout);
+        boolean requested = false;
+        try {
+            call.invoke(watched);
+            requested = true;
+        } finally {
+            if (!requested) {
+                discard(watched);
+            }
+        }
+    }
+
+    /**
+     * Takes the calling thread's reusable request, or creates a new one if the thread has
+     * none to spare.
+     */
+    private BlockingRequest acquireRequest() {
+        BlockingRequest request = requests.get();
+        if (request == null) {
+            return new BlockingRequest();
+        }
+
+        requests.set(null);
+        return request;
+    }
+
+    /**
+     * Waits for the given request to complete, once complete the request is kept for the
+     * next operation made by the calling thread.  A request that did not complete, such as
+     * when the wait is interrupted, may still be answered later and so is not reused.
+     */
+    private void awaitResponse(BlockingRequest request) throws IOException {
+        try {
+            request.await(waitStrategy, spinTime);
+        } finally {
+            if (request.isComplete()) {
+                request.reset();
+                requests.set(request);
+            }
+        }
+    }
+
+    /**
+     * Applies the timeout to an asynchronous operation, when no timeout is configured the
+     * given AsyncResult is returned unchanged.
+     *
+     * @param request
+     *        the caller's AsyncResult that is to be completed or failed on timeout.
+     * @param timeout
+     *        the timeout in milliseconds, a negative value means no timeout.
+     *
+     * @return the AsyncResult to pass to the wrapped Provider.
+     */
+    private AsyncResult<Void> watch(AsyncResult<Void> request, long timeout) {
+        HashedWheelTimer timer = getTimer(timeout);
+        if (timer == null) {
+            return request;
+        }
+
+        return schedule(timer, new TimedRequest(request, timeout));
+    }
+
+    private TimedRequest schedule(HashedWheelTimer timer, TimedRequest request) {
+        try {
+            request.timeout = timer.newTimeout(request, request.timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (IllegalStateException e) {
+            // The timer was stopped by a concurrent close, the Provider fails the request.
+        }
+        return request;
+    }
+
+    /**
+     * Stops tracking an asynchronous request that the wrapped Provider refused by throwing,
+     * the caller has already been given the error so its AsyncResult must not also be
+     * failed later by the timer.
+     */
+    private void discard(AsyncResult<Void> request) {
+        if (request instanceof TimedRequest) {
+            ((TimedRequest) request).discard();
+        }
+    }
+
+    private HashedWheelTimer getTimer(long timeout) {
+        if (timeout < 0) {
+            return null;
+        }
+
+        HashedWheelTimer timer = this.timer;
+        if (timer == null) {
+            synchronized (this) {
+                if (this.timer == null && !closed.get()) {
+                    this.timer = HashedWheelTimer.acquire();
+                }
+                timer = this.timer;
+            }
+        }
+
+        return timer;
+    }
+
+    /**
+     * A call to the wrapped Provider that is answered through the given AsyncResult.
+     */
+    private interface ProviderCall<E extends Exception> {
+
+        void invoke(AsyncResult<Void> request) throws IOException, E;
+
+    }
+
+    /**
+     * Wraps an AsyncResult and fails it with a timeout error if the timer expires before the
+     * wrapped Provider answers, whichever happens first completes the AsyncResult.
+     */
+    private final class TimedRequest implements AsyncResult<Void>, Runnable {
+
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AsyncResult<Void> watcher;
+        private final long timeoutMillis;
+        private volatile HashedWheelTimer.Timeout timeout;
+
+        public TimedRequest(AsyncResult<Void> watcher, long timeoutMillis) {
+            this.watcher = watcher;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public boolean isComplete() {
+            return completed.get();
+        }
+
+        @Override
+        public void onFailure(Throwable result) {
+            if (completed.compareAndSet(false, true)) {
+                cancelTimeout();
+                watcher.onFailure(result);
+            }
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+            if (completed.compareAndSet(false, true)) {
+                cancelTimeout();
+                watcher.onSuccess(result);
+            }
+        }
+
+        @Override
+        public void onSuccess() {
+            onSuccess(null);
+        }
+
+        @Override
+        public void run() {
+            if (completed.compareAndSet(false, true)) {
+                timedOutRequests.incrementAndGet();
+                watcher.onFailure(new IOException("Timed out after " + timeoutMillis + " ms waiting for a response"));
+            }
+        }
+
+        public void discard() {
+            if (completed.compareAndSet(false, true)) {
+                cancelTimeout();
+            }
+        }
+
+        private void cancelTimeout() {
+            HashedWheelTimer.Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
 }
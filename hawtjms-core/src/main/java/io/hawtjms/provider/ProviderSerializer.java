@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider;
+
+import io.hawtjms.util.RingBufferExecutor;
+import io.hawtjms.util.RingBufferExecutor.WaitStrategy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the single threaded Executor that a Provider uses to serialize its work.
+ *
+ * The serializer is chosen using options carrying the "serializer." prefix on the
+ * Provider URI, e.g. amqp://host:port?serializer.type=ringbuffer&serializer.waitStrategy=yield
+ *
+ * <ul>
+ *  <li>type - "executor" (the default) for a ScheduledThreadPoolExecutor, "ringbuffer"
+ *      for a {@link RingBufferExecutor} or "transport" for a {@link TransportSerializer}
+ *      which runs the Provider's work on the event loop thread of its Transport.</li>
+ *  <li>capacity - the number of slots in the ring buffer.</li>
+ *  <li>waitStrategy - one of block, yield or busy_spin.</li>
+ *  <li>batchSize - the number of tasks the ring buffer runs between idle checks.</li>
+ * </ul>
+ */
+public final class ProviderSerializer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProviderSerializer.class);
+
+    public static final String OPTION_PREFIX = "serializer.";
+
+    public static final String TYPE_EXECUTOR = "executor";
+    public static final String TYPE_RING_BUFFER = "ringbuffer";
+    public static final String TYPE_TRANSPORT = "transport";
+
+    private ProviderSerializer() {
+    }
+
+    /**
+     * Creates a serializer from the given options.
+     *
+     * @param options
+     *        the serializer options with the "serializer." prefix already removed.
+     * @param threadFactory
+     *        the factory that creates the serializer thread.
+     * @param idleTask
+     *        run on the serializer thread whenever it runs out of work, may be null.
+     *
+     * @return a new single threaded ExecutorService.
+     *
+     * @throws IllegalArgumentException if an option is not recognized or invalid.
+     */
+    public static ExecutorService create(Map<String, String> options, ThreadFactory threadFactory, final Runnable idleTask) {
+        Map<String, String> remaining = new HashMap<String, String>(options);
+
+        String type = remaining.remove("type");
+        if (type == null || type.equalsIgnoreCase(TYPE_EXECUTOR)) {
+            checkAllOptionsUsed(remaining, options);
+            return createExecutor(threadFactory, idleTask);
+        } else if (type.equalsIgnoreCase(TYPE_TRANSPORT)) {
+            checkAllOptionsUsed(remaining, options);
+            return new TransportSerializer(idleTask);
+        } else if (!type.equalsIgnoreCase(TYPE_RING_BUFFER)) {
+            throw new IllegalArgumentException("Unknown serializer type: " + type);
+        }
+
+        int capacity = RingBufferExecutor.DEFAULT_CAPACITY;
+        int batchSize = RingBufferExecutor.DEFAULT_BATCH_SIZE;
+        WaitStrategy waitStrategy = WaitStrategy.BLOCK;
+
+        try {
+            if (remaining.containsKey("capacity")) {
+                capacity = Integer.parseInt(remaining.remove("capacity"));
+            }
+            if (remaining.containsKey("batchSize")) {
+                batchSize = Integer.parseInt(remaining.remove("batchSize"));
+            }
+            if (remaining.containsKey("waitStrategy")) {
+                waitStrategy = WaitStrategy.valueOf(remaining.remove("waitStrategy").toUpperCase());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid serializer options given: " + options, e);
+        }
+
+        checkAllOptionsUsed(remaining, options);
+
+        return new RingBufferExecutor(threadFactory, capacity, waitStrategy, batchSize) {
+
+            @Override
+            protected void onIdle() {
+                if (idleTask != null) {
+                    idleTask.run();
+                }
+            }
+        };
+    }
+
+    /**
+     * @param options
+     *        the serializer options with the "serializer." prefix already removed.
+     *
+     * @return true if the options select a serializer that runs on the Transport event loop.
+     */
+    public static boolean isTransportType(Map<String, String> options) {
+        return options != null && TYPE_TRANSPORT.equalsIgnoreCase(options.get("type"));
+    }
+
+    private static ExecutorService createExecutor(ThreadFactory threadFactory, final Runnable idleTask) {
+        return new ScheduledThreadPoolExecutor(1, threadFactory) {
+
+            @Override
+            protected void afterExecute(Runnable task, Throwable error) {
+                super.afterExecute(task, error);
+
+                if (idleTask == null) {
+                    return;
+                }
+
+                // Only tasks that are due count as pending work, a scheduled task that
+                // is not yet ready to run should not hold back the idle notification.
+                Runnable next = getQueue().peek();
+                if (next == null || (next instanceof Delayed && ((Delayed) next).getDelay(TimeUnit.NANOSECONDS) > 0)) {
+                    try {
+                        idleTask.run();
+                    } catch (Throwable e) {
+                        LOG.debug("Caught exception from serializer idle processing: {}", e.getMessage());
+                    }
+                }
+            }
+        };
+    }
+
+    private static void checkAllOptionsUsed(Map<String, String> remaining, Map<String, String> options) {
+        if (!remaining.isEmpty()) {
+            String msg = ""
+                + " Not all serializer options could be set."
+                + " Check the options are spelled correctly."
+                + " Given parameters=[" + options + "]."
+                + " This Provider cannot be started.";
+            throw new IllegalArgumentException(msg);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider;
+
+import io.hawtjms.transports.EventLoopTransport;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A serializer that runs a Provider's work on the event loop thread of its Transport
+ * rather than on a thread of its own.
+ *
+ * Once bound to a connected Transport, work submitted from the event loop thread, such
+ * as the handling of newly read data, runs immediately on that thread so that incoming
+ * data is decoded and dispatched without being handed to another thread.  Work submitted
+ * from any other thread is queued and the queue is drained on the event loop.  Until the
+ * serializer is bound there is no event loop to use and work runs on the calling thread,
+ * a Provider only does that while it is connecting or closing after a failed connect.
+ *
+ * Work that runs on the event loop must never block, while it runs no other Transport
+ * sharing the event loop can read or write.
+ */
+public class TransportSerializer extends AbstractExecutorService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransportSerializer.class);
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final Runnable idleTask;
+    private final Runnable drainTask = new Runnable() {
+
+        @Override
+        public void run() {
+            drainScheduled.set(false);
+            drain();
+        }
+    };
+
+    private volatile EventLoopTransport transport;
+    private volatile boolean shutdown;
+
+    // Only accessed from the event loop thread.
+    private boolean draining;
+
+    /**
+     * Creates a new unbound serializer.
+     *
+     * @param idleTask
+     *        run on the event loop each time the queued work has been drained, may be null.
+     */
+    public TransportSerializer(Runnable idleTask) {
+        this.idleTask = idleTask;
+    }
+
+    /**
+     * Binds this serializer to the event loop of the given connected Transport, any work
+     * queued before now is run on the event loop.
+     *
+     * @param transport
+     *        the Transport whose event loop will run all further work.
+     */
+    public void bind(EventLoopTransport transport) {
+        this.transport = transport;
+        if (!tasks.isEmpty()) {
+            scheduleDrain(transport);
+        }
+    }
+
+    /**
+     * @return true if the serializer is bound and the calling thread is its event loop.
+     */
+    public boolean isInEventLoop() {
+        EventLoopTransport transport = this.transport;
+        return transport != null && transport.isInEventLoop();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("Serializer has been shutdown");
+        }
+
+        EventLoopTransport transport = this.transport;
+        if (transport == null) {
+            synchronized (this) {
+                runTask(task);
+            }
+            return;
+        }
+
+        tasks.add(task);
+
+        if (transport.isInEventLoop()) {
+            // When already draining the new task runs once the current one completes,
+            // otherwise this is an I/O callback and the work can be done right now.
+            if (!draining) {
+                drain();
+            }
+        } else {
+            scheduleDrain(transport);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+
+        EventLoopTransport transport = this.transport;
+        if (transport == null || tasks.isEmpty()) {
+            tasks.clear();
+            terminated.countDown();
+        } else {
+            scheduleDrain(transport);
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private void scheduleDrain(EventLoopTransport transport) {
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                transport.executeOnEventLoop(drainTask);
+            } catch (Throwable error) {
+                drainScheduled.set(false);
+                LOG.debug("Could not schedule work on the Transport event loop: {}", error.getMessage());
+            }
+        }
+    }
+
+    private void drain() {
+        draining = true;
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                runTask(task);
+            }
+        } finally {
+            draining = false;
+        }
+
+        if (idleTask != null) {
+            runTask(idleTask);
+        }
+
+        if (shutdown && tasks.isEmpty()) {
+            terminated.countDown();
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable error) {
+            LOG.debug("Serializer task failed: {}", error.getMessage());
+            LOG.trace("Error detail: ", error);
+        }
+    }
+}
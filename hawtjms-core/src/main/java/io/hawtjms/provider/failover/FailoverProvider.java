@@ -33,11 +33,13 @@ import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderFactory;
 import io.hawtjms.provider.ProviderListener;
 import io.hawtjms.provider.ProviderRequest;
+import io.hawtjms.provider.ProviderSerializer;
 import io.hawtjms.util.IOExceptionSupport;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -102,6 +104,7 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
     private int maxReconnectAttempts = UNLIMITED;
     private int startupMaxReconnectAttempts = UNLIMITED;
     private int warnAfterReconnectAttempts = 10;
+    private volatile boolean directDispatch;
 
     public FailoverProvider(Map<String, String> nestedOptions) {
         this(null, nestedOptions);
@@ -112,10 +115,29 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
     }
 
     public FailoverProvider(URI[] uris, Map<String, String> nestedOptions) {
+        this(uris, nestedOptions, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Creates a FailoverProvider whose serializer is configured from the given options.
+     *
+     * @param uris
+     *        the URIs of the remote peers to connect to.
+     * @param nestedOptions
+     *        options applied to each URI in the pool.
+     * @param serializerOptions
+     *        the serializer options, see {@link ProviderSerializer}.
+     */
+    public FailoverProvider(URI[] uris, Map<String, String> nestedOptions, Map<String, String> serializerOptions) {
         this.uris = new FailoverUriPool(uris, nestedOptions);
         this.sslContext = JmsSslContext.getCurrentSslContext();
 
-        this.serializer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        if (ProviderSerializer.isTransportType(serializerOptions)) {
+            throw new IllegalArgumentException(
+                "The Failover Provider has no Transport of its own, use the directDispatch option instead");
+        }
+
+        this.serializer = ProviderSerializer.create(serializerOptions, new ThreadFactory() {
 
             @Override
             public Thread newThread(Runnable runner) {
@@ -124,7 +146,7 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
                 serial.setName("FailoverProvider: serialization thread");
                 return serial;
             }
-        });
+        }, null);
 
         // All Connection attempts happen in this schedulers thread.  Once a connection
         // is established it will hand the open connection back to the serializer thread
@@ -308,6 +330,25 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
         serializer.execute(pending);
     }
 
+    @Override
+    public void acknowledge(final List<JmsInboundMessageDispatch> envelopes, final ACK_TYPE ackType, AsyncResult<Void> request) throws IOException, JMSException {
+        checkClosed();
+        final FailoverRequest<Void> pending = new FailoverRequest<Void>(request) {
+            @Override
+            public void doTask() throws Exception {
+                provider.acknowledge(envelopes, ackType, this);
+            }
+
+            @Override
+            public boolean succeedsWhenOffline() {
+                // Allow this to succeed, acks would be stale.
+                return true;
+            }
+        };
+
+        serializer.execute(pending);
+    }
+
     @Override
     public void commit(final JmsSessionId sessionId, AsyncResult<Void> request) throws IOException, JMSException, UnsupportedOperationException {
         checkClosed();
@@ -594,6 +635,10 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
         if (closed.get() || failed.get()) {
             return;
         }
+        if (directDispatch) {
+            listener.onMessage(envelope);
+            return;
+        }
         serializer.execute(new Runnable() {
             @Override
             public void run() {
@@ -742,6 +787,23 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
         this.useExponentialBackOff = useExponentialBackOff;
     }
 
+    public boolean isDirectDispatch() {
+        return directDispatch;
+    }
+
+    /**
+     * Controls whether messages from the connected Provider are passed on to the listener
+     * on the thread that delivered them instead of first being handed to the failover
+     * serializer thread.  Combined with the "transport" serializer type on the nested
+     * Provider this lets a message go from the socket to its consumer on one thread.
+     *
+     * @param directDispatch
+     *        true if incoming messages should skip the failover serializer.
+     */
+    public void setDirectDispatch(boolean directDispatch) {
+        this.directDispatch = directDispatch;
+    }
+
     public long getConnectTimeout() {
         return this.connectTimeout;
     }
@@ -20,6 +20,7 @@ import io.hawtjms.provider.AsyncProvider;
 import io.hawtjms.provider.BlockingProvider;
 import io.hawtjms.provider.DefaultBlockingProvider;
 import io.hawtjms.provider.ProviderFactory;
+import io.hawtjms.provider.ProviderSerializer;
 import io.hawtjms.util.PropertyUtil;
 import io.hawtjms.util.URISupport;
 import io.hawtjms.util.URISupport.CompositeData;
@@ -38,8 +39,9 @@ public class FailoverProviderFactory extends ProviderFactory {
         CompositeData composite = URISupport.parseComposite(remoteURI);
         Map<String, String> options = composite.getParameters();
         Map<String, String> nested = PropertyUtil.filterProperties(options, "nested.");
+        Map<String, String> serializer = PropertyUtil.filterProperties(options, ProviderSerializer.OPTION_PREFIX);
 
-        FailoverProvider failover = new FailoverProvider(composite.getComponents(), nested);
+        FailoverProvider failover = new FailoverProvider(composite.getComponents(), nested, serializer);
         if (!PropertyUtil.setProperties(failover, options)) {
             String msg = ""
                 + " Not all options could be set on the Failover provider."
@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+/**
+ * A Transport whose I/O events are all handled by a single event loop thread.
+ *
+ * Exposing the event loop allows the owner of the Transport to run its own work on the
+ * same thread that reads from and writes to the socket, see
+ * {@link io.hawtjms.provider.TransportSerializer}.
+ */
+public interface EventLoopTransport extends Transport {
+
+    /**
+     * @return true if the calling thread is the event loop thread of this Transport.
+     */
+    boolean isInEventLoop();
+
+    /**
+     * Runs the given task on the event loop of this Transport, if called from the event
+     * loop thread the task is run before this method returns.  Only valid once the
+     * Transport is connected.
+     *
+     * @param task
+     *        the task to run on the event loop thread.
+     */
+    void executeOnEventLoop(Runnable task);
+
+}
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A selector thread from a small pool that is shared by all open {@link NioTcpTransport}
+ * instances, each Transport is assigned one loop from the pool in round robin order.
+ *
+ * All changes to the interest set of a registered channel are made on the selector thread,
+ * other threads hand such work to the loop using {@link #execute(Runnable)}.  The pool is
+ * reference counted in the same manner as {@link SharedVertx}, and like the Vert.x event
+ * loop pool its size is fixed when it is created.
+ */
+final class NioSelectorLoop implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioSelectorLoop.class);
+
+    /**
+     * Default number of selector threads, one per core up to a limit of four.
+     */
+    static final int DEFAULT_SELECTOR_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private static final Object lock = new Object();
+
+    private static NioSelectorLoop[] pool;
+    private static int references;
+    private static int nextLoop;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private volatile boolean running = true;
+
+    private NioSelectorLoop(int index) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, "hawtJMS NIO Selector " + index);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Acquires a reference to the selector pool, starting it if needed, and returns the
+     * next loop in the pool.
+     *
+     * @param threads
+     *        the number of selector threads to use if the pool must be created, values
+     *        less than or equal to zero select the default size.
+     *
+     * @return the selector loop the caller should register with.
+     *
+     * @throws IOException if a selector cannot be opened.
+     */
+    static NioSelectorLoop acquire(int threads) throws IOException {
+        synchronized (lock) {
+            if (pool == null) {
+                pool = createPool(threads > 0 ? threads : DEFAULT_SELECTOR_THREADS);
+                nextLoop = 0;
+                LOG.debug("Started {} NIO selector threads", pool.length);
+            } else if (threads > 0 && threads != pool.length) {
+                LOG.debug("NIO selector pool already running with {} threads, " +
+                          "requested size {} is ignored", pool.length, threads);
+            }
+
+            references++;
+            NioSelectorLoop loop = pool[nextLoop];
+            nextLoop = (nextLoop + 1) % pool.length;
+            return loop;
+        }
+    }
+
+    /**
+     * Releases a reference obtained from {@link #acquire(int)}, the pool is stopped once
+     * the last reference is released.
+     *
+     * @param loop
+     *        the loop instance that was returned from acquire.
+     */
+    static void release(NioSelectorLoop loop) {
+        synchronized (lock) {
+            if (loop == null || pool == null || !isPooled(loop)) {
+                return;
+            }
+
+            if (--references == 0) {
+                for (NioSelectorLoop pooled : pool) {
+                    pooled.running = false;
+                    pooled.selector.wakeup();
+                }
+                pool = null;
+            }
+        }
+    }
+
+    /**
+     * @return the number of threads in the running selector pool, or zero if not running.
+     */
+    static int getSelectorThreads() {
+        synchronized (lock) {
+            return pool != null ? pool.length : 0;
+        }
+    }
+
+    /**
+     * Queues a task to run on the selector thread, or runs it now if called from there.
+     *
+     * @param task
+     *        the task to run on the selector thread.
+     */
+    void execute(Runnable task) {
+        if (Thread.currentThread() == thread) {
+            task.run();
+        } else {
+            tasks.add(task);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * @return true if the calling thread is the selector thread.
+     */
+    boolean isLoopThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Registers the channel with this loop's selector, must be called on the selector thread.
+     */
+    SelectionKey register(SocketChannel channel, int ops, NioTcpTransport transport) throws ClosedChannelException {
+        return channel.register(selector, ops, transport);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    runTask(task);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    NioTcpTransport transport = (NioTcpTransport) key.attachment();
+                    try {
+                        if (key.isValid() && key.isWritable()) {
+                            transport.handleWriteReady(key);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            transport.handleReadReady(key);
+                        }
+                    } catch (CancelledKeyException e) {
+                        LOG.trace("Key cancelled while processing: {}", transport);
+                    }
+                }
+            }
+        } catch (Throwable error) {
+            LOG.warn("NIO selector loop failed: {}", error.getMessage());
+            LOG.trace("Error detail: ", error);
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOG.debug("Caught exception while closing selector: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static NioSelectorLoop[] createPool(int threads) throws IOException {
+        NioSelectorLoop[] loops = new NioSelectorLoop[threads];
+        try {
+            for (int i = 0; i < threads; ++i) {
+                loops[i] = new NioSelectorLoop(i);
+            }
+        } catch (IOException e) {
+            for (NioSelectorLoop loop : loops) {
+                if (loop != null) {
+                    loop.running = false;
+                    loop.selector.wakeup();
+                }
+            }
+            throw e;
+        }
+
+        return loops;
+    }
+
+    private static boolean isPooled(NioSelectorLoop loop) {
+        for (NioSelectorLoop pooled : pool) {
+            if (pooled == loop) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable error) {
+            LOG.debug("Selector task failed: {}", error.getMessage());
+        }
+    }
+}
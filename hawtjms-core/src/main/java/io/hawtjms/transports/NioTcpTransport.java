@@ -0,0 +1,383 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import io.hawtjms.util.MemoryGovernor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A TCP Transport built directly on java.nio with no Vert.x dependency.
+ *
+ * Writes are made directly to the socket from the sending thread, any data the socket
+ * cannot accept right away is queued and written from the transport's selector thread,
+ * one of a small shared pool.  Reads
+ * are pulled by the {@link NioTransportListener} once it is told data is ready, which lets
+ * the protocol layer read straight into its own buffers without an intermediate copy.
+ */
+public class NioTcpTransport implements EventLoopTransport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioTcpTransport.class);
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 15000;
+
+    private final NioTransportListener listener;
+    private final URI remoteLocation;
+    private final AtomicBoolean connected = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final LinkedList<ByteBuffer> writeQueue = new LinkedList<ByteBuffer>();
+
+    private NioSelectorLoop loop;
+    private SocketChannel channel;
+    private SelectionKey key;
+
+    // Guarded by writeQueue
+    private long queuedBytes;
+    private boolean writeQueueFull;
+    private MemoryGovernor.Account memoryAccount;
+
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private boolean tcpNoDelay = true;
+    private int selectorThreads = NioSelectorLoop.DEFAULT_SELECTOR_THREADS;
+    private int writeQueueHighWatermark = TcpTransport.DEFAULT_WRITE_QUEUE_HIGH_WATERMARK;
+    private int writeQueueLowWatermark = TcpTransport.DEFAULT_WRITE_QUEUE_LOW_WATERMARK;
+
+    /**
+     * Create a new instance of the transport.
+     *
+     * @param listener
+     *        The NioTransportListener that will receive events from this Transport instance.
+     * @param remoteLocation
+     *        The remote location where this transport should connection to.
+     */
+    public NioTcpTransport(NioTransportListener listener, URI remoteLocation) {
+        this.listener = listener;
+        this.remoteLocation = remoteLocation;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        loop = NioSelectorLoop.acquire(selectorThreads);
+
+        try {
+            channel = openChannel();
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            LOG.info("Failed to connect to target Broker: {}", e.getMessage());
+            close();
+            throw e;
+        }
+
+        connected.set(true);
+        LOG.info("We have connected! Socket is {}", channel);
+
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    key = loop.register(channel, SelectionKey.OP_READ, NioTcpTransport.this);
+                } catch (ClosedChannelException e) {
+                    LOG.debug("Channel closed before it could be registered");
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            connected.set(false);
+
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } finally {
+                NioSelectorLoop.release(loop);
+            }
+
+            synchronized (writeQueue) {
+                if (memoryAccount != null) {
+                    memoryAccount.release(queuedBytes);
+                }
+                writeQueue.clear();
+                queuedBytes = 0;
+            }
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer output) throws IOException {
+        checkConnected();
+
+        boolean signalFull = false;
+        synchronized (writeQueue) {
+            if (writeQueue.isEmpty()) {
+                channel.write(output);
+                if (!output.hasRemaining()) {
+                    return;
+                }
+
+                enableWriteInterest();
+            }
+
+            // The caller may reuse the buffer once we return so the remainder is copied.
+            ByteBuffer pending = ByteBuffer.allocate(output.remaining());
+            pending.put(output);
+            pending.flip();
+
+            writeQueue.add(pending);
+            queuedBytes += pending.remaining();
+            if (memoryAccount != null) {
+                memoryAccount.reserve(pending.remaining());
+            }
+
+            if (!writeQueueFull && queuedBytes >= writeQueueHighWatermark) {
+                writeQueueFull = true;
+                signalFull = true;
+            }
+        }
+
+        if (signalFull) {
+            LOG.trace("Write queue full");
+            listener.onTransportWriteQueueFull();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // Writes go to the socket immediately, nothing is batched.
+    }
+
+    @Override
+    public boolean isInEventLoop() {
+        return loop != null && loop.isLoopThread();
+    }
+
+    @Override
+    public void executeOnEventLoop(Runnable task) {
+        loop.execute(task);
+    }
+
+    /**
+     * Reads available data directly into the given buffer.  Called by the listener after it
+     * has been notified that data is ready, the listener should read until zero is returned
+     * and then call {@link #readComplete()}.
+     *
+     * @param target
+     *        the buffer to read into.
+     *
+     * @return the number of bytes read, or -1 if the remote peer closed the connection.
+     *
+     * @throws IOException if an error occurs while reading.
+     */
+    public int read(ByteBuffer target) throws IOException {
+        int bytesRead = channel.read(target);
+        if (bytesRead < 0 && connected.compareAndSet(true, false)) {
+            listener.onTransportClosed();
+        }
+
+        return bytesRead;
+    }
+
+    /**
+     * Called by the listener once it has consumed the available data, the selector will
+     * again watch the socket for incoming data.
+     */
+    public void readComplete() {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (key != null && key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                }
+            }
+        });
+    }
+
+    /**
+     * Opens and connects the channel used by this Transport, subclasses can override this
+     * to connect using other types of stream socket.  The returned channel may be in
+     * blocking mode, it is switched to non-blocking once connected.
+     *
+     * @return a newly connected SocketChannel.
+     *
+     * @throws IOException if the channel cannot be opened or connected.
+     */
+    protected SocketChannel openChannel() throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().setTcpNoDelay(tcpNoDelay);
+            channel.socket().connect(
+                new InetSocketAddress(remoteLocation.getHost(), remoteLocation.getPort()), connectTimeout);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        return channel;
+    }
+
+    /**
+     * @return the remote location this Transport connects to.
+     */
+    protected URI getRemoteLocation() {
+        return remoteLocation;
+    }
+
+    //---------- Selector thread callbacks -----------------------------------//
+
+    void handleReadReady(SelectionKey key) {
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        listener.onReadReady();
+    }
+
+    void handleWriteReady(SelectionKey key) {
+        boolean signalDrained = false;
+        try {
+            synchronized (writeQueue) {
+                while (!writeQueue.isEmpty()) {
+                    ByteBuffer next = writeQueue.peek();
+                    int written = channel.write(next);
+                    queuedBytes -= written;
+                    if (memoryAccount != null) {
+                        memoryAccount.release(written);
+                    }
+                    if (next.hasRemaining()) {
+                        break;
+                    }
+                    writeQueue.poll();
+                }
+
+                if (writeQueue.isEmpty()) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                }
+
+                if (writeQueueFull && queuedBytes <= writeQueueLowWatermark) {
+                    writeQueueFull = false;
+                    signalDrained = true;
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Caught exception while writing queued data: {}", e.getMessage());
+            listener.onTransportError(e);
+            return;
+        }
+
+        if (signalDrained) {
+            LOG.trace("Write queue drained");
+            listener.onTransportWriteQueueDrained();
+        }
+    }
+
+    //---------- Property Setters and Getters --------------------------------//
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * @return the number of selector threads requested for the shared selector pool.
+     */
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    /**
+     * Sets the number of selector threads shared by all NIO Transports.  The value only
+     * takes effect when this transport is the one that starts the shared pool.
+     *
+     * @param selectorThreads
+     *        the size of the selector pool, values <= 0 select the default size.
+     */
+    public void setSelectorThreads(int selectorThreads) {
+        this.selectorThreads = selectorThreads;
+    }
+
+    public int getWriteQueueHighWatermark() {
+        return writeQueueHighWatermark;
+    }
+
+    public void setWriteQueueHighWatermark(int writeQueueHighWatermark) {
+        this.writeQueueHighWatermark = writeQueueHighWatermark;
+    }
+
+    public int getWriteQueueLowWatermark() {
+        return writeQueueLowWatermark;
+    }
+
+    public void setWriteQueueLowWatermark(int writeQueueLowWatermark) {
+        this.writeQueueLowWatermark = writeQueueLowWatermark;
+    }
+
+    /**
+     * Sets the account that bytes waiting in the write queue are charged to.
+     *
+     * @param memoryAccount
+     *        the account to charge, or null to stop accounting.
+     */
+    public void setMemoryAccount(MemoryGovernor.Account memoryAccount) {
+        synchronized (writeQueue) {
+            this.memoryAccount = memoryAccount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NioTcpTransport: " + remoteLocation.getHost() + ":" + remoteLocation.getPort();
+    }
+
+    private void enableWriteInterest() {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (key != null && key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            }
+        });
+    }
+
+    private void checkConnected() throws IOException {
+        if (!connected.get()) {
+            throw new IOException("Cannot send to a non-connected transport.");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+/**
+ * Listener interface for users of the {@link NioTcpTransport}.
+ *
+ * Rather than pushing data to the listener the NIO Transport signals that data is ready
+ * and the listener pulls it using {@link NioTcpTransport#read(java.nio.ByteBuffer)}, this
+ * allows the data to be read directly into a buffer owned by the protocol layer.
+ */
+public interface NioTransportListener extends TransportListener {
+
+    /**
+     * Called from the Transport's selector thread when data is ready to be read.  No
+     * further notifications are made until the listener calls
+     * {@link NioTcpTransport#readComplete()}.
+     */
+    void onReadReady();
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import io.hawtjms.util.IOExceptionSupport;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A java.nio Transport that connects over a Unix domain socket, the socket file is taken
+ * from the path of the remote URI, e.g. amqp+unix:///var/run/broker.sock
+ *
+ * Unix domain socket channels were added to java.nio in Java 16, the required classes are
+ * accessed reflectively so that the client still builds for older Java versions.  On an
+ * older runtime the connect attempt fails with an IOException.
+ */
+public class NioUnixTransport extends NioTcpTransport {
+
+    /**
+     * Create a new instance of the transport.
+     *
+     * @param listener
+     *        The NioTransportListener that will receive events from this Transport instance.
+     * @param remoteLocation
+     *        The URI whose path names the Unix domain socket to connect to.
+     */
+    public NioUnixTransport(NioTransportListener listener, URI remoteLocation) {
+        super(listener, remoteLocation);
+    }
+
+    @Override
+    protected SocketChannel openChannel() throws IOException {
+        String path = getRemoteLocation().getPath();
+        if (path == null || path.isEmpty()) {
+            throw new IOException("No socket path given in URI: " + getRemoteLocation());
+        }
+
+        Object family = null;
+        Method open = null;
+        Method address = null;
+
+        try {
+            Class<?> familyClass = Class.forName("java.net.StandardProtocolFamily");
+            Class<?> protocolFamily = Class.forName("java.net.ProtocolFamily");
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+
+            family = familyClass.getField("UNIX").get(null);
+            open = SocketChannel.class.getMethod("open", protocolFamily);
+            address = addressClass.getMethod("of", String.class);
+        } catch (Exception e) {
+            throw new IOException("Unix domain socket Transport requires Java 16 or later");
+        }
+
+        SocketChannel channel = null;
+        try {
+            channel = (SocketChannel) open.invoke(null, family);
+            channel.connect((SocketAddress) address.invoke(null, path));
+        } catch (InvocationTargetException e) {
+            closeQuietly(channel);
+            throw IOExceptionSupport.create(e.getCause());
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        } catch (Exception e) {
+            closeQuietly(channel);
+            throw IOExceptionSupport.create(e);
+        }
+
+        return channel;
+    }
+
+    @Override
+    public String toString() {
+        return "NioUnixTransport: " + getRemoteLocation().getPath();
+    }
+
+    private void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
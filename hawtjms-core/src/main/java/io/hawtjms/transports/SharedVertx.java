@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+
+/**
+ * Holder for a process wide Vert.x instance that is shared by all the Vert.x based
+ * Transports.  Creating a Vert.x instance per connection results in a full event loop
+ * pool per connection, sharing one instance bounds the number of I/O threads to the
+ * size of the event loop pool regardless of how many connections are open.
+ *
+ * The shared instance is reference counted, it is created when the first Transport
+ * acquires it and stopped once the last Transport releases it.  The size of the event
+ * loop pool is fixed when the instance is created, later requests for a different size
+ * are ignored until the instance has been released by all its users.
+ */
+public final class SharedVertx {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedVertx.class);
+
+    /**
+     * The system property that Vert.x reads when sizing its event loop pool.
+     */
+    public static final String EVENT_LOOP_SIZE_PROPERTY = "vertx.pool.eventloop.size";
+
+    /**
+     * Default number of event loop threads, one per available core.
+     */
+    public static final int DEFAULT_EVENT_LOOP_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final Object lock = new Object();
+
+    private static Vertx instance;
+    private static int references;
+    private static int eventLoopThreads;
+
+    private SharedVertx() {
+    }
+
+    /**
+     * Acquires a reference to the shared Vert.x instance, creating it if needed.
+     *
+     * @param threads
+     *        the event loop pool size to use if the instance must be created, values
+     *        less than or equal to zero select the default size.
+     *
+     * @return the shared Vert.x instance.
+     */
+    public static Vertx acquire(int threads) {
+        synchronized (lock) {
+            if (instance == null) {
+                eventLoopThreads = threads > 0 ? threads : DEFAULT_EVENT_LOOP_THREADS;
+                instance = createVertx(eventLoopThreads);
+                LOG.debug("Created shared Vert.x instance with {} event loop threads", eventLoopThreads);
+            } else if (threads > 0 && threads != eventLoopThreads) {
+                LOG.debug("Shared Vert.x instance already running with {} event loop threads, " +
+                          "requested size {} is ignored", eventLoopThreads, threads);
+            }
+
+            references++;
+            return instance;
+        }
+    }
+
+    /**
+     * Releases a reference previously obtained from {@link #acquire(int)}, the shared
+     * instance is stopped once all references have been released.
+     *
+     * @param vertx
+     *        the instance that was returned from acquire.
+     */
+    public static void release(Vertx vertx) {
+        synchronized (lock) {
+            if (vertx == null || vertx != instance) {
+                return;
+            }
+
+            if (--references == 0) {
+                LOG.debug("Stopping shared Vert.x instance, no Transports remain");
+                instance = null;
+                vertx.stop();
+            }
+        }
+    }
+
+    /**
+     * @return the number of Transports currently holding a reference to the shared instance.
+     */
+    public static int getReferenceCount() {
+        synchronized (lock) {
+            return references;
+        }
+    }
+
+    /**
+     * @return the size of the event loop pool of the running instance, or zero if not running.
+     */
+    public static int getEventLoopThreads() {
+        synchronized (lock) {
+            return instance != null ? eventLoopThreads : 0;
+        }
+    }
+
+    private static Vertx createVertx(int threads) {
+        // Vert.x sizes its event loop pool from a system property when the instance is
+        // created, we apply our value only for the duration of the create call.
+        String previous = System.getProperty(EVENT_LOOP_SIZE_PROPERTY);
+        System.setProperty(EVENT_LOOP_SIZE_PROPERTY, Integer.toString(threads));
+        try {
+            return VertxFactory.newVertx();
+        } finally {
+            if (previous != null) {
+                System.setProperty(EVENT_LOOP_SIZE_PROPERTY, previous);
+            } else {
+                System.clearProperty(EVENT_LOOP_SIZE_PROPERTY);
+            }
+        }
+    }
+}
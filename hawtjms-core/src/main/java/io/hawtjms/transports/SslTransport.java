@@ -20,16 +20,52 @@ import io.hawtjms.jms.JmsSslContext;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Vertx;
 import org.vertx.java.core.net.NetClient;
 
 /**
  * Provides SSL configuration to the Vert.x NetClient object used by the underling
  * TCP based Transport.
+ *
+ * SSL transports that connect to the same host and port with the same key and trust
+ * store settings share a single NetClient, and with it a single SSLContext.  This avoids
+ * reloading the key material on every connect.  It does not give session resumption, the
+ * Vert.x NetClient creates its SSLEngine without the peer host and port and JSSE only
+ * looks for a cached session to resume when an engine is created for a known peer, so
+ * every connect performs a full handshake.
+ *
+ * The number of connects that may be performing an SSL handshake at the same time is
+ * bounded.  The handshakes themselves run on the shared event loop threads, the limit
+ * keeps a reconnect storm from occupying all of them at once, the remaining transports
+ * wait in connect for a permit.  Transports configured with the same limit share one set
+ * of permits.
  */
 public class SslTransport extends TcpTransport {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SslTransport.class);
+
+    public static final int DEFAULT_MAX_CONCURRENT_HANDSHAKES = Runtime.getRuntime().availableProcessors();
+    public static final long DEFAULT_HANDSHAKE_TIMEOUT = 15000;
+
+    private static final Map<String, SharedClient> clients = new HashMap<String, SharedClient>();
+
+    private static final Map<Integer, Semaphore> handshakePermits = new HashMap<Integer, Semaphore>();
+
     private final JmsSslContext context;
+    private SharedClient sharedClient;
+
+    private int maxConcurrentHandshakes = DEFAULT_MAX_CONCURRENT_HANDSHAKES;
+    private long handshakeTimeout = DEFAULT_HANDSHAKE_TIMEOUT;
 
     /**
      * Create an instance of the SSL transport
@@ -47,6 +83,68 @@ public class SslTransport extends TcpTransport {
         this.context = context;
     }
 
+    @Override
+    public void connect() throws IOException {
+        Semaphore permits = getHandshakePermits(maxConcurrentHandshakes);
+
+        try {
+            if (!permits.tryAcquire(handshakeTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting to begin SSL handshake with: " + getRemoteLocation());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to begin SSL handshake");
+        }
+
+        try {
+            super.connect();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    protected NetClient acquireNetClient(Vertx vertx) throws IOException {
+        String key = createClientKey();
+
+        synchronized (clients) {
+            SharedClient shared = clients.get(key);
+            if (shared == null || shared.vertx != vertx) {
+                // A client created for an earlier Vert.x instance stays open until the
+                // transports that still hold it have released it.
+                NetClient client = vertx.createNetClient();
+                configureNetClient(client);
+                shared = new SharedClient(key, vertx, client);
+                clients.put(key, shared);
+                LOG.debug("Created shared SSL client for {}", getRemoteLocation());
+            }
+
+            shared.references++;
+            sharedClient = shared;
+            return shared.client;
+        }
+    }
+
+    @Override
+    protected void releaseNetClient(NetClient client) {
+        synchronized (clients) {
+            SharedClient shared = sharedClient;
+            sharedClient = null;
+
+            if (shared == null || shared.client != client) {
+                client.close();
+                return;
+            }
+
+            if (--shared.references == 0) {
+                if (clients.get(shared.key) == shared) {
+                    clients.remove(shared.key);
+                }
+                client.close();
+            }
+        }
+    }
+
     @Override
     protected void configureNetClient(NetClient client) throws IOException {
         client.setSSL(true);
@@ -55,4 +153,93 @@ public class SslTransport extends TcpTransport {
         client.setTrustStorePath(context.getTrustStoreLocation());
         client.setTrustStorePassword(context.getTrustStorePassword());
     }
+
+    /**
+     * @return the limit on concurrent SSL handshakes for transports with this setting.
+     */
+    public int getMaxConcurrentHandshakes() {
+        return maxConcurrentHandshakes;
+    }
+
+    /**
+     * Sets the number of SSL transports that may be connecting at the same time.  The
+     * limit is shared by all SSL transports that are configured with the same value.
+     *
+     * @param maxConcurrentHandshakes
+     *        the maximum number of concurrent handshakes, values <= 0 select the default.
+     */
+    public void setMaxConcurrentHandshakes(int maxConcurrentHandshakes) {
+        this.maxConcurrentHandshakes = maxConcurrentHandshakes;
+    }
+
+    /**
+     * @return the time in milliseconds to wait for a handshake permit.
+     */
+    public long getHandshakeTimeout() {
+        return handshakeTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds that connect waits to start an SSL handshake while
+     * the concurrent handshake limit has been reached.
+     *
+     * @param handshakeTimeout
+     *        the time to wait for a handshake permit.
+     */
+    public void setHandshakeTimeout(long handshakeTimeout) {
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    private static Semaphore getHandshakePermits(int limit) {
+        Integer permits = Integer.valueOf(limit > 0 ? limit : DEFAULT_MAX_CONCURRENT_HANDSHAKES);
+
+        synchronized (handshakePermits) {
+            Semaphore semaphore = handshakePermits.get(permits);
+            if (semaphore == null) {
+                semaphore = new Semaphore(permits.intValue(), true);
+                handshakePermits.put(permits, semaphore);
+            }
+
+            return semaphore;
+        }
+    }
+
+    /**
+     * The key identifies the remote peer and the key and trust store settings.  The store
+     * passwords are part of the settings but the key is held for the life of the process,
+     * so only a digest of the settings is kept rather than the passwords themselves.
+     */
+    private String createClientKey() throws IOException {
+        String settings = context.getKeyStoreLocation() + "|" + context.getKeyStorePassword() + "|" +
+                          context.getTrustStoreLocation() + "|" + context.getTrustStorePassword();
+
+        MessageDigest digest = null;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Cannot create the SSL client key: " + e.getMessage());
+        }
+
+        StringBuilder key = new StringBuilder();
+        key.append(getRemoteLocation().getHost()).append(":").append(getRemoteLocation().getPort()).append("|");
+        for (byte b : digest.digest(settings.getBytes(Charset.forName("UTF-8")))) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return key.toString();
+    }
+
+    private static final class SharedClient {
+
+        private final String key;
+        private final Vertx vertx;
+        private final NetClient client;
+        private int references;
+
+        public SharedClient(String key, Vertx vertx, NetClient client) {
+            this.key = key;
+            this.vertx = vertx;
+            this.client = client;
+        }
+    }
 }
@@ -17,41 +17,79 @@
 package io.hawtjms.transports;
 
 import io.hawtjms.util.IOExceptionSupport;
+import io.hawtjms.util.MemoryGovernor;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
-import org.vertx.java.core.VertxFactory;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.net.NetClient;
 import org.vertx.java.core.net.NetSocket;
 
 /**
  * Vertex based TCP transport for raw data packets.
+ *
+ * All instances share a single Vert.x event loop pool, see {@link SharedVertx}.
+ *
+ * Data passed to send is coalesced into a write batch which is written to the socket
+ * when it exceeds the configured size, when the owner calls flush, or at the latest once
+ * the batch has been held for the configured delay.  The batch is guarded so that send,
+ * flush and close may be called from any thread.
+ *
+ * The number of bytes written but not yet accepted by the socket is tracked, once it
+ * reaches the configured high watermark the TransportListener is notified that the write
+ * queue is full and later that it has drained when it falls back to the low watermark.
  */
-public class TcpTransport implements Transport {
+public class TcpTransport implements EventLoopTransport {
 
     private static final Logger LOG = LoggerFactory.getLogger(TcpTransport.class);
 
-    private final Vertx vertx = VertxFactory.newVertx();
-    private final NetClient client = vertx.createNetClient();
+    public static final int DEFAULT_MAX_WRITE_BATCH_SIZE = 64 * 1024;
+    public static final long DEFAULT_MAX_WRITE_BATCH_DELAY = 1;
+
+    public static final int DEFAULT_WRITE_QUEUE_HIGH_WATERMARK = 1024 * 1024;
+    public static final int DEFAULT_WRITE_QUEUE_LOW_WATERMARK = 256 * 1024;
+
+    private static final int INITIAL_WRITE_BATCH_SIZE = 4 * 1024;
+
     private final TransportListener listener;
     private final URI remoteLocation;
     private final AtomicBoolean connected = new AtomicBoolean();
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicReference<Throwable> connectionError = new AtomicReference<Throwable>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean writeQueueFull = new AtomicBoolean();
 
+    private Vertx vertx;
+    private NetClient client;
     private NetSocket socket;
+    private Context context;
+
+    // Guarded by writeBatchLock, the sequence identifies the batch a delayed flush is for.
+    private final Object writeBatchLock = new Object();
+    private ByteBuf writeBatch;
+    private long writeBatchSequence;
+
+    private int eventLoopThreads = SharedVertx.DEFAULT_EVENT_LOOP_THREADS;
+    private int maxWriteBatchSize = DEFAULT_MAX_WRITE_BATCH_SIZE;
+    private long maxWriteBatchDelay = DEFAULT_MAX_WRITE_BATCH_DELAY;
+    private int writeQueueHighWatermark = DEFAULT_WRITE_QUEUE_HIGH_WATERMARK;
+    private int writeQueueLowWatermark = DEFAULT_WRITE_QUEUE_LOW_WATERMARK;
+    private volatile MemoryGovernor.Account memoryAccount;
 
     /**
      * Create a new instance of the transport.
@@ -70,14 +108,16 @@ public class TcpTransport implements Transport {
     public void connect() throws IOException {
         final CountDownLatch connectLatch = new CountDownLatch(1);
 
-        configureNetClient(client);
+        vertx = SharedVertx.acquire(eventLoopThreads);
 
         try {
+            client = acquireNetClient(vertx);
             client.connect(remoteLocation.getPort(), remoteLocation.getHost(), new AsyncResultHandler<NetSocket>() {
                 @Override
                 public void handle(AsyncResult<NetSocket> asyncResult) {
                     if (asyncResult.succeeded()) {
                         socket = asyncResult.result();
+                        context = vertx.currentContext();
                         LOG.info("We have connected! Socket is {}", socket);
 
                         connected.set(true);
@@ -104,6 +144,14 @@ public class TcpTransport implements Transport {
                             }
                         });
 
+                        socket.setWriteQueueMaxSize(writeQueueHighWatermark);
+                        socket.drainHandler(new Handler<Void>() {
+                            @Override
+                            public void handle(Void event) {
+                                checkWriteQueueDrained();
+                            }
+                        });
+
                     } else {
                         connected.set(false);
                         connectionError.set(asyncResult.cause());
@@ -113,6 +161,7 @@ public class TcpTransport implements Transport {
             });
         } catch (Throwable reason) {
             LOG.info("Failed to connect to target Broker: {}", reason);
+            close();
             throw IOExceptionSupport.create(reason);
         }
 
@@ -123,6 +172,7 @@ public class TcpTransport implements Transport {
         }
 
         if (connectionError.get() != null) {
+            close();
             throw IOExceptionSupport.create(connectionError.get());
         }
     }
@@ -131,22 +181,126 @@ public class TcpTransport implements Transport {
     public void close() throws IOException {
         if (closed.compareAndSet(false, true)) {
             if (connected.get()) {
+                flush();
                 socket.close();
                 connected.set(false);
             }
 
-            vertx.stop();
+            synchronized (writeBatchLock) {
+                writeBatch = null;
+            }
+
+            if (client != null) {
+                releaseNetClient(client);
+            }
+
+            SharedVertx.release(vertx);
         }
     }
 
     @Override
     public void send(ByteBuffer output) throws IOException {
         checkConnected();
-        Buffer sendBuffer = new Buffer(output.remaining());
-        while (output.hasRemaining()) {
-            sendBuffer.appendByte(output.get());
+
+        if (maxWriteBatchSize <= 0) {
+            // The caller is free to reuse the given buffer once we return so a single bulk
+            // copy is made which is then wrapped by the Vert.x Buffer without a further copy.
+            byte[] bytes = new byte[output.remaining()];
+            output.get(bytes);
+            write(new Buffer(bytes));
+            return;
         }
-        vertx.eventBus().send(socket.writeHandlerID(), sendBuffer);
+
+        Buffer sendBuffer = null;
+        long startedBatch = -1;
+
+        synchronized (writeBatchLock) {
+            if (writeBatch == null) {
+                writeBatch = Unpooled.buffer(Math.max(INITIAL_WRITE_BATCH_SIZE, output.remaining()));
+                startedBatch = ++writeBatchSequence;
+            }
+
+            writeBatch.writeBytes(output);
+
+            if (writeBatch.readableBytes() >= maxWriteBatchSize || maxWriteBatchDelay <= 0) {
+                sendBuffer = takeWriteBatch();
+            }
+        }
+
+        if (sendBuffer != null) {
+            write(sendBuffer);
+        } else if (startedBatch > 0) {
+            scheduleBatchFlush(startedBatch);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        Buffer sendBuffer = null;
+        synchronized (writeBatchLock) {
+            if (connected.get()) {
+                sendBuffer = takeWriteBatch();
+            }
+        }
+
+        if (sendBuffer != null) {
+            write(sendBuffer);
+        }
+    }
+
+    @Override
+    public boolean isInEventLoop() {
+        return context != null && vertx.currentContext() == context;
+    }
+
+    @Override
+    public void executeOnEventLoop(final Runnable task) {
+        if (isInEventLoop()) {
+            task.run();
+        } else {
+            context.runOnContext(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    task.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Provides the NetClient used to connect this transport, by default a new client is
+     * created for each transport.  Subclasses may share clients between transports, in
+     * which case {@link #releaseNetClient(NetClient)} must also be overridden.
+     *
+     * @param vertx
+     *        the Vert.x instance used by this transport.
+     *
+     * @return a configured NetClient ready for connect.
+     *
+     * @throws IOException if an error occurs while configuring the client.
+     */
+    protected NetClient acquireNetClient(Vertx vertx) throws IOException {
+        NetClient client = vertx.createNetClient();
+        configureNetClient(client);
+        return client;
+    }
+
+    /**
+     * Called when this transport is closed to release the NetClient that was obtained
+     * from {@link #acquireNetClient(Vertx)}.
+     *
+     * @param client
+     *        the NetClient to release.
+     */
+    protected void releaseNetClient(NetClient client) {
+        client.close();
+    }
+
+    /**
+     * @return the remote location this transport connects to.
+     */
+    protected URI getRemoteLocation() {
+        return remoteLocation;
     }
 
     /**
@@ -158,6 +312,211 @@ public class TcpTransport implements Transport {
         // NO-OP for this Transport.
     }
 
+    /**
+     * @return the number of event loop threads requested for the shared Vert.x instance.
+     */
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    /**
+     * Sets the number of event loop threads used by the shared Vert.x instance.  The value
+     * only takes effect when this transport is the one that creates the shared instance.
+     *
+     * @param eventLoopThreads
+     *        the size of the event loop pool, values <= 0 select one thread per core.
+     */
+    public void setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    /**
+     * @return the number of bytes that can be batched before a write is forced.
+     */
+    public int getMaxWriteBatchSize() {
+        return maxWriteBatchSize;
+    }
+
+    /**
+     * Sets the number of bytes that will be coalesced into a single socket write before
+     * the batch is written regardless of whether the owner has requested a flush.
+     *
+     * @param maxWriteBatchSize
+     *        the batch size limit in bytes, values <= 0 disable write batching.
+     */
+    public void setMaxWriteBatchSize(int maxWriteBatchSize) {
+        this.maxWriteBatchSize = maxWriteBatchSize;
+    }
+
+    /**
+     * @return the time in milliseconds that data can be held in a write batch.
+     */
+    public long getMaxWriteBatchDelay() {
+        return maxWriteBatchDelay;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds that data can be held in a write batch, once
+     * it has elapsed the batch is written from the event loop if no flush has done so.
+     *
+     * @param maxWriteBatchDelay
+     *        the maximum age of a write batch in milliseconds, values <= 0 write each send
+     *        immediately.
+     */
+    public void setMaxWriteBatchDelay(long maxWriteBatchDelay) {
+        this.maxWriteBatchDelay = maxWriteBatchDelay;
+    }
+
+    /**
+     * @return the number of queued bytes at which the write queue is reported as full.
+     */
+    public int getWriteQueueHighWatermark() {
+        return writeQueueHighWatermark;
+    }
+
+    /**
+     * Sets the number of bytes that can be queued for writing before the TransportListener
+     * is told that the write queue is full.
+     *
+     * @param writeQueueHighWatermark
+     *        the high watermark in bytes.
+     */
+    public void setWriteQueueHighWatermark(int writeQueueHighWatermark) {
+        this.writeQueueHighWatermark = writeQueueHighWatermark;
+    }
+
+    /**
+     * @return the number of queued bytes at which a full write queue is reported as drained.
+     */
+    public int getWriteQueueLowWatermark() {
+        return writeQueueLowWatermark;
+    }
+
+    /**
+     * Sets the number of bytes the write queue must fall to after having been full before
+     * the TransportListener is told that the write queue has drained.
+     *
+     * @param writeQueueLowWatermark
+     *        the low watermark in bytes.
+     */
+    public void setWriteQueueLowWatermark(int writeQueueLowWatermark) {
+        this.writeQueueLowWatermark = writeQueueLowWatermark;
+    }
+
+    /**
+     * Sets the account that bytes waiting in the write queue are charged to.  Data handed
+     * to the socket is bounded by the write queue high watermark and is not counted.
+     *
+     * @param memoryAccount
+     *        the account to charge, or null to stop accounting.
+     */
+    public void setMemoryAccount(MemoryGovernor.Account memoryAccount) {
+        this.memoryAccount = memoryAccount;
+    }
+
+    /**
+     * @return true if the write queue has reached the high watermark and not yet drained.
+     */
+    public boolean isWriteQueueFull() {
+        return writeQueueFull.get();
+    }
+
+    private Buffer takeWriteBatch() {
+        if (writeBatch == null) {
+            return null;
+        }
+
+        Buffer sendBuffer = new Buffer(writeBatch);
+        writeBatch = null;
+        return sendBuffer;
+    }
+
+    private void scheduleBatchFlush(final long batch) {
+        final Handler<Long> flushHandler = new Handler<Long>() {
+            @Override
+            public void handle(Long timerId) {
+                Buffer sendBuffer = null;
+                synchronized (writeBatchLock) {
+                    if (writeBatchSequence == batch && connected.get()) {
+                        sendBuffer = takeWriteBatch();
+                    }
+                }
+
+                if (sendBuffer != null) {
+                    write(sendBuffer);
+                }
+            }
+        };
+
+        // The timer is set from our own context so that the flush runs on the event loop.
+        executeOnEventLoop(new Runnable() {
+            @Override
+            public void run() {
+                vertx.setTimer(maxWriteBatchDelay, flushHandler);
+            }
+        });
+    }
+
+    private void write(final Buffer sendBuffer) {
+        final int size = sendBuffer.length();
+        MemoryGovernor.Account account = memoryAccount;
+        if (account != null) {
+            account.reserve(size);
+        }
+        if (queuedBytes.addAndGet(size) >= writeQueueHighWatermark) {
+            signalWriteQueueFull();
+        }
+
+        if (vertx.currentContext() == context) {
+            doWrite(sendBuffer, size);
+        } else {
+            context.runOnContext(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    doWrite(sendBuffer, size);
+                }
+            });
+        }
+    }
+
+    private void doWrite(Buffer sendBuffer, int size) {
+        if (connected.get()) {
+            socket.write(sendBuffer);
+        }
+
+        queuedBytes.addAndGet(-size);
+        MemoryGovernor.Account account = memoryAccount;
+        if (account != null) {
+            account.release(size);
+        }
+
+        // The socket's own queue is bounded by the high watermark as well, while it is
+        // full the drain handler will recheck our state once the socket catches up.
+        if (connected.get() && socket.writeQueueFull()) {
+            signalWriteQueueFull();
+        } else {
+            checkWriteQueueDrained();
+        }
+    }
+
+    private void signalWriteQueueFull() {
+        if (writeQueueFull.compareAndSet(false, true)) {
+            LOG.trace("Write queue full, {} bytes queued", queuedBytes.get());
+            listener.onTransportWriteQueueFull();
+        }
+    }
+
+    private void checkWriteQueueDrained() {
+        if (writeQueueFull.get() && queuedBytes.get() <= writeQueueLowWatermark &&
+            (!connected.get() || !socket.writeQueueFull())) {
+
+            if (writeQueueFull.compareAndSet(true, false)) {
+                LOG.trace("Write queue drained, {} bytes queued", queuedBytes.get());
+                listener.onTransportWriteQueueDrained();
+            }
+        }
+    }
+
     private void checkConnected() throws IOException {
         if (!connected.get()) {
             throw new IOException("Cannot send to a non-connected transport.");
@@ -40,7 +40,9 @@ public interface Transport {
     void close() throws IOException;
 
     /**
-     * Sends a chunk of data over the Transport connection.
+     * Sends a chunk of data over the Transport connection.  The Transport may hold the
+     * data in a write batch until the batch fills or {@link #flush()} is called, the
+     * given buffer may be reused by the caller as soon as this method returns.
      *
      * @param output
      *        The buffer of data that is to be transmitted.
@@ -49,4 +51,11 @@ public interface Transport {
      */
     void send(ByteBuffer output) throws IOException;
 
+    /**
+     * Writes any data that is being held in the current write batch.
+     *
+     * @throws IOException if an error occurs during the write operation.
+     */
+    void flush() throws IOException;
+
 }
@@ -25,7 +25,9 @@ import org.vertx.java.core.buffer.Buffer;
 public interface TransportListener {
 
     /**
-     * Called when new incoming data has become available.
+     * Called when new incoming data has become available.  The Transport hands ownership
+     * of the given Buffer to the listener and will not modify it afterwards, so the
+     * listener may process it later without taking a copy.
      *
      * @param incoming
      *        the next incoming packet of data.
@@ -45,4 +47,17 @@ public interface TransportListener {
      */
     void onTransportError(Throwable cause);
 
+    /**
+     * Called when the amount of data queued for writing has reached the Transport's
+     * high watermark.  Users should stop sending new data until they are notified that
+     * the write queue has drained.
+     */
+    void onTransportWriteQueueFull();
+
+    /**
+     * Called when the amount of data queued for writing has fallen back below the
+     * Transport's low watermark after a previous write queue full notification.
+     */
+    void onTransportWriteQueueDrained();
+
 }
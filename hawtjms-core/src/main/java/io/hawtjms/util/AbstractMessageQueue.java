@@ -18,6 +18,11 @@ package io.hawtjms.util;
 
 import io.hawtjms.jms.message.JmsInboundMessageDispatch;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Abstract Message Queue class used to implement the common functions of a Message Queue
  * instance.
@@ -38,15 +43,7 @@ public abstract class AbstractMessageQueue implements MessageQueue {
     @Override
     public JmsInboundMessageDispatch dequeue(long timeout) throws InterruptedException {
         synchronized (lock) {
-            // Wait until the consumer is ready to deliver messages.
-            while (timeout != 0 && !closed && (isEmpty() || !running)) {
-                if (timeout == -1) {
-                    lock.wait();
-                } else {
-                    lock.wait(timeout);
-                    break;
-                }
-            }
+            awaitMessages(timeout);
 
             if (closed || !running || isEmpty()) {
                 return null;
@@ -56,6 +53,23 @@ public abstract class AbstractMessageQueue implements MessageQueue {
         }
     }
 
+    @Override
+    public List<JmsInboundMessageDispatch> dequeue(int maxMessages, long timeout) throws InterruptedException {
+        synchronized (lock) {
+            awaitMessages(timeout);
+
+            if (closed || !running || isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            List<JmsInboundMessageDispatch> rc = new ArrayList<JmsInboundMessageDispatch>(Math.min(maxMessages, size()));
+            while (rc.size() < maxMessages && !isEmpty()) {
+                rc.add(removeFirst());
+            }
+            return rc;
+        }
+    }
+
     @Override
     public JmsInboundMessageDispatch dequeueNoWait() {
         synchronized (lock) {
@@ -108,6 +122,25 @@ public abstract class AbstractMessageQueue implements MessageQueue {
         return lock;
     }
 
+    /*
+     * Called under lock, waits until the consumer is ready to deliver messages, a wake up
+     * that does not satisfy that condition waits again for whatever time is left.
+     */
+    private void awaitMessages(long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeout));
+        while (timeout != 0 && !closed && (isEmpty() || !running)) {
+            if (timeout == -1) {
+                lock.wait();
+            } else {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+        }
+    }
+
     /**
      * Removes and returns the first entry in the implementation queue.  This method
      * is always called under lock and does not need to protect itself or check running
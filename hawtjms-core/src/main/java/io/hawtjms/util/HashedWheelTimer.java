@@ -0,0 +1,382 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timer for large numbers of short lived timeouts which rarely expire, such as the
+ * timeouts applied to outstanding Provider requests.
+ *
+ * Timeouts are kept in a wheel of buckets that a single thread advances once per tick,
+ * adding or cancelling a timeout is a constant time operation that never blocks and the
+ * cost of a timeout is one small object rather than an entry in a shared priority queue.
+ * A timeout fires up to one tick later than requested.  New and cancelled timeouts are
+ * handed to the timer thread through lock free queues so only the timer thread touches
+ * the wheel.
+ *
+ * A process wide instance that is reference counted in the same manner as the shared
+ * Vert.x instance is available from {@link #acquire()}.
+ */
+public class HashedWheelTimer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    public static final long DEFAULT_TICK_DURATION = 10;
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    private static final Object lock = new Object();
+
+    private static HashedWheelTimer instance;
+    private static int references;
+
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Thread worker;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+    private final AtomicLong expiredTimeouts = new AtomicLong();
+
+    private final long startTime;
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts a new timer.
+     *
+     * @param threadFactory
+     *        the factory used to create the timer thread.
+     * @param tickDuration
+     *        the time between ticks, the granularity of the timer.
+     * @param unit
+     *        the unit of the tick duration.
+     * @param ticksPerWheel
+     *        the number of buckets in the wheel, rounded up to a power of two.
+     */
+    public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be greater than zero");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("Ticks per wheel must be in the range 1 to 2^30");
+        }
+
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; ++i) {
+            wheel[i] = new Bucket();
+        }
+
+        this.startTime = System.nanoTime();
+        this.worker = threadFactory.newThread(new Worker());
+        this.worker.start();
+    }
+
+    /**
+     * @return a reference to the shared timer, starting it if needed.
+     */
+    public static HashedWheelTimer acquire() {
+        synchronized (lock) {
+            if (instance == null) {
+                instance = new HashedWheelTimer(new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable runner) {
+                        Thread thread = new Thread(runner, "hawtJMS Request Timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, DEFAULT_TICK_DURATION, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL);
+            }
+
+            references++;
+            return instance;
+        }
+    }
+
+    /**
+     * Releases a reference obtained from {@link #acquire()}, the shared timer is stopped
+     * once the last reference is released.
+     *
+     * @param timer
+     *        the timer instance that was returned from acquire.
+     */
+    public static void release(HashedWheelTimer timer) {
+        synchronized (lock) {
+            if (timer == null || timer != instance) {
+                return;
+            }
+
+            if (--references == 0) {
+                instance = null;
+                timer.stop();
+            }
+        }
+    }
+
+    /**
+     * Schedules the given task to run on the timer thread once the delay has passed.  The
+     * task should complete quickly as no other timeouts expire while it runs.
+     *
+     * @param task
+     *        the task to run on expiry.
+     * @param delay
+     *        the time from now at which the task should run.
+     * @param unit
+     *        the unit of the delay value.
+     *
+     * @return a handle that can be used to cancel the timeout.
+     *
+     * @throws IllegalStateException if the timer has been stopped.
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("Task cannot be null");
+        }
+        if (!running) {
+            throw new IllegalStateException("Timer has been stopped");
+        }
+
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+        pendingTimeouts.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread, timeouts that have not expired are discarded.
+     */
+    public void stop() {
+        running = false;
+        if (Thread.currentThread() != worker) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * @return the number of timeouts that have neither expired nor been cancelled.
+     */
+    public long getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * @return the total number of timeouts that have expired.
+     */
+    public long getExpiredTimeouts() {
+        return expiredTimeouts.get();
+    }
+
+    //---------- Timer thread ------------------------------------------------//
+
+    private class Worker implements Runnable {
+
+        private long tick;
+
+        @Override
+        public void run() {
+            while (running) {
+                if (!awaitNextTick()) {
+                    continue;
+                }
+
+                removeCancelledTimeouts();
+                transferNewTimeouts();
+                wheel[(int) (tick & mask)].expireTimeouts();
+                tick++;
+            }
+
+            newTimeouts.clear();
+            cancelledTimeouts.clear();
+        }
+
+        private boolean awaitNextTick() {
+            long deadline = tickDuration * (tick + 1);
+            long remaining = deadline - (System.nanoTime() - startTime);
+            if (remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private void transferNewTimeouts() {
+            Timeout timeout;
+            while ((timeout = newTimeouts.poll()) != null) {
+                if (timeout.state.get() != Timeout.STATE_PENDING) {
+                    continue;
+                }
+
+                long target = Math.max(timeout.deadline / tickDuration, tick);
+                timeout.remainingRounds = (target - tick) / wheel.length;
+                wheel[(int) (target & mask)].add(timeout);
+            }
+        }
+
+        private void removeCancelledTimeouts() {
+            Timeout timeout;
+            while ((timeout = cancelledTimeouts.poll()) != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+        }
+    }
+
+    private final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expireTimeouts() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    /**
+     * Handle for a task scheduled with {@link HashedWheelTimer#newTimeout(Runnable, long, TimeUnit)}.
+     */
+    public final class Timeout {
+
+        private static final int STATE_PENDING = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+        private final long deadline;
+        private volatile Runnable task;
+
+        // Only accessed from the timer thread.
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels this timeout, the task will not be run if it has not already been.
+         *
+         * @return true if the timeout was cancelled by this call.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+                return false;
+            }
+
+            task = null;
+            pendingTimeouts.decrementAndGet();
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        /**
+         * @return true if this timeout was cancelled before it expired.
+         */
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        /**
+         * @return true if this timeout has expired and its task was run.
+         */
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        private void expire() {
+            Runnable task = this.task;
+            if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+                return;
+            }
+
+            this.task = null;
+            pendingTimeouts.decrementAndGet();
+            expiredTimeouts.incrementAndGet();
+
+            try {
+                task.run();
+            } catch (Throwable error) {
+                LOG.debug("Timeout task failed: {}", error.getMessage());
+                LOG.trace("Error detail: ", error);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the bytes of message data held by the client across many connections and
+ * signals when that total nears a configured limit.
+ *
+ * Each connection accounts through an {@link Account} of its own so usage can be reported
+ * per connection, every account also adds to the total of the governor that created it.
+ * Once the total reaches the high watermark the governor is throttling, producers should
+ * wait in {@link Account#awaitCapacity(long)} and consumers should hold back credit until
+ * usage falls below the watermark again.
+ */
+public final class MemoryGovernor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryGovernor.class);
+
+    public static final int DEFAULT_HIGH_WATERMARK = 90;
+
+    private final long limit;
+    private final long highWatermark;
+    private final AtomicLong usage = new AtomicLong();
+    private final CopyOnWriteArraySet<Account> accounts = new CopyOnWriteArraySet<Account>();
+
+    private final Object capacityLock = new Object();
+    private int waiters;
+
+    /**
+     * Creates a new governor with the default high watermark.
+     *
+     * @param limit
+     *        the number of bytes the client may hold across all accounts.
+     */
+    public MemoryGovernor(long limit) {
+        this(limit, DEFAULT_HIGH_WATERMARK);
+    }
+
+    /**
+     * Creates a new governor.
+     *
+     * @param limit
+     *        the number of bytes the client may hold across all accounts.
+     * @param highWatermark
+     *        the percentage of the limit at which throttling begins.
+     */
+    public MemoryGovernor(long limit, int highWatermark) {
+        this.limit = limit;
+        this.highWatermark = (limit * Math.max(1, Math.min(100, highWatermark))) / 100;
+    }
+
+    /**
+     * Creates a new account that adds to the usage tracked by this governor.
+     *
+     * @param name
+     *        the name used to report the account, usually a connection id.
+     *
+     * @return a new account with nothing reserved.
+     */
+    public Account createAccount(String name) {
+        Account account = new Account(name);
+        accounts.add(account);
+        return account;
+    }
+
+    /**
+     * @return the number of bytes the client may hold across all accounts.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of bytes currently held across all accounts.
+     */
+    public long getUsage() {
+        return usage.get();
+    }
+
+    /**
+     * @return true if usage has reached the high watermark.
+     */
+    public boolean isThrottling() {
+        return usage.get() >= highWatermark;
+    }
+
+    /**
+     * @return the accounts currently open against this governor.
+     */
+    public Collection<Account> getAccounts() {
+        return Collections.<Account>unmodifiableCollection(accounts);
+    }
+
+    private void add(long bytes) {
+        long current = usage.addAndGet(bytes);
+        if (bytes < 0 && current < highWatermark) {
+            synchronized (capacityLock) {
+                if (waiters > 0) {
+                    capacityLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private boolean awaitCapacity(long timeout) throws InterruptedException {
+        if (!isThrottling()) {
+            return true;
+        }
+
+        LOG.trace("Waiting for memory, {} of {} bytes in use", usage.get(), limit);
+
+        long deadline = timeout >= 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        synchronized (capacityLock) {
+            waiters++;
+            try {
+                while (isThrottling()) {
+                    if (timeout < 0) {
+                        capacityLock.wait();
+                    } else {
+                        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        capacityLock.wait(remaining);
+                    }
+                }
+            } finally {
+                waiters--;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The share of a governor's usage that belongs to one connection.
+     */
+    public final class Account {
+
+        private final String name;
+        private final AtomicLong usage = new AtomicLong();
+        private volatile boolean closed;
+
+        private Account(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records that the given number of bytes is now held.
+         *
+         * @param bytes
+         *        the number of bytes taken.
+         */
+        public void reserve(long bytes) {
+            if (bytes > 0 && !closed) {
+                usage.addAndGet(bytes);
+                add(bytes);
+            }
+        }
+
+        /**
+         * Records that the given number of bytes is no longer held.
+         *
+         * @param bytes
+         *        the number of bytes given back.
+         */
+        public void release(long bytes) {
+            if (bytes > 0 && !closed) {
+                usage.addAndGet(-bytes);
+                add(-bytes);
+            }
+        }
+
+        /**
+         * Blocks while the governor is throttling.
+         *
+         * @param timeout
+         *        the time in milliseconds to wait, a negative value means wait forever.
+         *
+         * @return true if usage is below the high watermark, false if the timeout expired.
+         *
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        public boolean awaitCapacity(long timeout) throws InterruptedException {
+            return MemoryGovernor.this.awaitCapacity(timeout);
+        }
+
+        /**
+         * @return true if the governor this account belongs to is throttling.
+         */
+        public boolean isThrottling() {
+            return MemoryGovernor.this.isThrottling();
+        }
+
+        /**
+         * @return the number of bytes currently held through this account.
+         */
+        public long getUsage() {
+            return usage.get();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the governor whose usage this account adds to.
+         */
+        public MemoryGovernor getGovernor() {
+            return MemoryGovernor.this;
+        }
+
+        /**
+         * Gives back anything still held through this account and removes it from the
+         * governor, called when the owning connection closes.  Later calls to reserve
+         * or release are ignored.
+         */
+        public void close() {
+            closed = true;
+            if (accounts.remove(this)) {
+                add(-usage.getAndSet(0));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryGovernor.Account: " + name + " [" + usage.get() + " bytes]";
+        }
+    }
+}
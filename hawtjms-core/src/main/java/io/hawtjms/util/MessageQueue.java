@@ -67,6 +67,22 @@ public interface MessageQueue {
      */
     JmsInboundMessageDispatch dequeue(long timeout) throws InterruptedException;
 
+    /**
+     * Used to get a batch of enqueued messages under a single acquisition of the queue
+     * lock.  Waits for the first message in the same way as {@link #dequeue(long)} and
+     * then removes whatever else is already queued, up to the given maximum.
+     *
+     * @param maxMessages
+     *        the largest number of messages to return.
+     * @param timeout
+     *        the time to wait for the first message, -1 to wait forever, 0 not to wait.
+     *
+     * @return a List of the messages removed, empty if we timeout or if the consumer is closed.
+     *
+     * @throws InterruptedException if the wait is interrupted.
+     */
+    List<JmsInboundMessageDispatch> dequeue(int maxMessages, long timeout) throws InterruptedException;
+
     /**
      * Used to get an enqueued Message if on exists, otherwise returns null.
      *
@@ -19,32 +19,39 @@ package io.hawtjms.util;
 import io.hawtjms.jms.message.JmsInboundMessageDispatch;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
  * Simple Message Priority ordered Queue.  Message envelopes are stored in the
  * Queue based on their priority value.
+ *
+ * Each priority level is held in its own array ring buffer and a bitmap records which
+ * levels hold messages, so the highest priority message is found with a single bit scan
+ * instead of a walk over every level.  The rings grow when full and are reused after that,
+ * so once warmed up the queue does not allocate on enqueue or dequeue.
  */
 public final class PriorityMessageQueue extends AbstractMessageQueue {
 
-    private static final Integer MAX_PRIORITY = 10;
+    private static final int MAX_PRIORITY = 10;
+    private static final int INITIAL_LEVEL_CAPACITY = 16;
 
-    private final LinkedList<JmsInboundMessageDispatch>[] lists;
+    private final Ring[] levels;
+    private int occupied;
     private int size = 0;
 
-    @SuppressWarnings("unchecked")
     public PriorityMessageQueue() {
-        this.lists = new LinkedList[MAX_PRIORITY];
+        this.levels = new Ring[MAX_PRIORITY];
         for (int i = 0; i < MAX_PRIORITY; i++) {
-            lists[i] = new LinkedList<JmsInboundMessageDispatch>();
+            levels[i] = new Ring(INITIAL_LEVEL_CAPACITY);
         }
     }
 
     @Override
     public void enqueue(JmsInboundMessageDispatch envelope) {
         synchronized (lock) {
-            getList(envelope).addLast(envelope);
+            int priority = getPriority(envelope);
+            levels[priority].addLast(envelope);
+            occupied |= 1 << priority;
             this.size++;
             lock.notify();
         }
@@ -53,7 +60,9 @@ public final class PriorityMessageQueue extends AbstractMessageQueue {
     @Override
     public void enqueueFirst(JmsInboundMessageDispatch envelope) {
         synchronized (lock) {
-            getList(envelope).addFirst(envelope);
+            int priority = getPriority(envelope);
+            levels[priority].addFirst(envelope);
+            occupied |= 1 << priority;
             this.size++;
             lock.notify();
         }
@@ -77,8 +86,9 @@ public final class PriorityMessageQueue extends AbstractMessageQueue {
     public void clear() {
         synchronized (lock) {
             for (int i = 0; i < MAX_PRIORITY; i++) {
-                lists[i].clear();
+                levels[i].clear();
             }
+            this.occupied = 0;
             this.size = 0;
         }
     }
@@ -86,12 +96,10 @@ public final class PriorityMessageQueue extends AbstractMessageQueue {
     @Override
     public List<JmsInboundMessageDispatch> removeAll() {
         synchronized (lock) {
-            ArrayList<JmsInboundMessageDispatch> result = new ArrayList<JmsInboundMessageDispatch>(size());
-            for (int i = MAX_PRIORITY - 1; i >= 0; i--) {
-                List<JmsInboundMessageDispatch> list = lists[i];
-                result.addAll(list);
-                size -= list.size();
-                list.clear();
+            ArrayList<JmsInboundMessageDispatch> result = new ArrayList<JmsInboundMessageDispatch>(size);
+            JmsInboundMessageDispatch envelope;
+            while ((envelope = removeFirst()) != null) {
+                result.add(envelope);
             }
             return result;
         }
@@ -99,29 +107,31 @@ public final class PriorityMessageQueue extends AbstractMessageQueue {
 
     @Override
     protected JmsInboundMessageDispatch removeFirst() {
-        if (this.size > 0) {
-            for (int i = MAX_PRIORITY - 1; i >= 0; i--) {
-                LinkedList<JmsInboundMessageDispatch> list = lists[i];
-                if (!list.isEmpty()) {
-                    this.size--;
-                    return list.removeFirst();
-                }
-            }
+        if (occupied == 0) {
+            return null;
+        }
+
+        int priority = highestOccupied();
+        Ring level = levels[priority];
+        JmsInboundMessageDispatch envelope = level.pollFirst();
+        if (level.isEmpty()) {
+            occupied &= ~(1 << priority);
         }
-        return null;
+        this.size--;
+        return envelope;
     }
 
     @Override
     protected JmsInboundMessageDispatch peekFirst() {
-        if (this.size > 0) {
-            for (int i = MAX_PRIORITY - 1; i >= 0; i--) {
-                LinkedList<JmsInboundMessageDispatch> list = lists[i];
-                if (!list.isEmpty()) {
-                    return list.peekFirst();
-                }
-            }
+        if (occupied == 0) {
+            return null;
         }
-        return null;
+
+        return levels[highestOccupied()].peekFirst();
+    }
+
+    private int highestOccupied() {
+        return 31 - Integer.numberOfLeadingZeros(occupied);
     }
 
     private int getPriority(JmsInboundMessageDispatch envelope) {
@@ -133,7 +143,66 @@ public final class PriorityMessageQueue extends AbstractMessageQueue {
         return priority;
     }
 
-    private LinkedList<JmsInboundMessageDispatch> getList(JmsInboundMessageDispatch envelope) {
-        return lists[getPriority(envelope)];
+    /*
+     * Array backed double ended queue for one priority level, always used under lock.
+     */
+    private static final class Ring {
+
+        private JmsInboundMessageDispatch[] elements;
+        private int head;
+        private int count;
+
+        public Ring(int capacity) {
+            this.elements = new JmsInboundMessageDispatch[capacity];
+        }
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+
+        public void addLast(JmsInboundMessageDispatch envelope) {
+            if (count == elements.length) {
+                grow();
+            }
+            elements[(head + count) & (elements.length - 1)] = envelope;
+            count++;
+        }
+
+        public void addFirst(JmsInboundMessageDispatch envelope) {
+            if (count == elements.length) {
+                grow();
+            }
+            head = (head - 1) & (elements.length - 1);
+            elements[head] = envelope;
+            count++;
+        }
+
+        public JmsInboundMessageDispatch pollFirst() {
+            JmsInboundMessageDispatch envelope = elements[head];
+            elements[head] = null;
+            head = (head + 1) & (elements.length - 1);
+            count--;
+            return envelope;
+        }
+
+        public JmsInboundMessageDispatch peekFirst() {
+            return elements[head];
+        }
+
+        public void clear() {
+            while (count > 0) {
+                pollFirst();
+            }
+            head = 0;
+        }
+
+        private void grow() {
+            JmsInboundMessageDispatch[] larger = new JmsInboundMessageDispatch[elements.length << 1];
+            int firstPart = Math.min(count, elements.length - head);
+            System.arraycopy(elements, head, larger, 0, firstPart);
+            System.arraycopy(elements, 0, larger, firstPart, count - firstPart);
+            elements = larger;
+            head = 0;
+        }
     }
 }
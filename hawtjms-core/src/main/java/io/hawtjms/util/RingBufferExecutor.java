@@ -0,0 +1,386 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single threaded Executor whose task queue is a bounded lock-free ring buffer that
+ * any number of threads may submit to.
+ *
+ * Submitting threads claim a slot with a single CAS and never take a lock.  The executor
+ * thread drains tasks in batches and when it finds the ring empty it either parks, yields
+ * or spins depending on the configured {@link WaitStrategy}.  A submitter that finds the
+ * ring full spins briefly and then parks or yields until there is space, except for the
+ * executor thread itself whose tasks are held in an overflow list so that it can never
+ * deadlock on its own queue.
+ */
+public class RingBufferExecutor extends AbstractExecutorService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RingBufferExecutor.class);
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * How the executor thread waits for work, and how submitters wait for space.
+     */
+    public enum WaitStrategy {
+        /** Park the thread, lowest CPU use at the cost of a wake up on each new task. */
+        BLOCK,
+        /** Yield the thread between checks. */
+        YIELD,
+        /** Spin on the CPU, lowest latency but needs a core of its own to be useful. */
+        BUSY_SPIN
+    }
+
+    private final ThreadFactory threadFactory;
+    private final WaitStrategy waitStrategy;
+    private final int batchSize;
+    private final int mask;
+    private final AtomicReferenceArray<Runnable> tasks;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    // Only read and written by the executor thread.
+    private long head;
+    private final LinkedList<Runnable> overflow = new LinkedList<Runnable>();
+
+    private volatile Thread thread;
+    private volatile boolean sleeping;
+    private volatile boolean shutdown;
+    private volatile boolean shutdownNow;
+
+    /**
+     * Creates a new executor with the default capacity and batch size that blocks when idle.
+     *
+     * @param threadFactory
+     *        the factory used to create the executor thread.
+     */
+    public RingBufferExecutor(ThreadFactory threadFactory) {
+        this(threadFactory, DEFAULT_CAPACITY, WaitStrategy.BLOCK, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new executor.
+     *
+     * @param threadFactory
+     *        the factory used to create the executor thread.
+     * @param capacity
+     *        the number of slots in the ring, rounded up to a power of two.
+     * @param waitStrategy
+     *        how threads wait for work or for space in the ring.
+     * @param batchSize
+     *        the maximum number of tasks run between idle checks.
+     */
+    public RingBufferExecutor(ThreadFactory threadFactory, int capacity, WaitStrategy waitStrategy, int batchSize) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Ring capacity must be at least 2");
+        }
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+
+        this.threadFactory = threadFactory;
+        this.waitStrategy = waitStrategy;
+        this.batchSize = Math.max(1, batchSize);
+        this.mask = size - 1;
+        this.tasks = new AtomicReferenceArray<Runnable>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        ensureStarted();
+
+        if (Thread.currentThread() == thread) {
+            // The executor thread must not wait on itself, hold the task locally if there
+            // are already tasks waiting or the ring is full so that ordering is preserved.
+            if (!overflow.isEmpty() || !offer(task)) {
+                overflow.add(task);
+            }
+            return;
+        }
+
+        int tries = 0;
+        while (!offer(task)) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            tries = waitFor(tries);
+        }
+
+        if (sleeping) {
+            sleeping = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Called from the executor thread when it has run all queued tasks and is about to
+     * wait for more.  Subclasses can override this to do work that should happen once a
+     * burst of tasks has been processed.
+     */
+    protected void onIdle() {
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        wake();
+
+        if (thread == null) {
+            synchronized (this) {
+                if (thread == null) {
+                    terminated.countDown();
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdownNow = true;
+        shutdown();
+
+        // The executor thread stops at its next check, tasks left in the ring are returned.
+        try {
+            awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Runnable> remaining = new ArrayList<Runnable>();
+        Runnable task;
+        while ((task = poll()) != null) {
+            remaining.add(task);
+        }
+        remaining.addAll(overflow);
+        overflow.clear();
+        return remaining;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.currentThread() == thread) {
+            return false;
+        }
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * @return the number of slots in the ring.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    //---------- Ring buffer implementation ----------------------------------//
+
+    private boolean offer(Runnable task) {
+        long position = tail.get();
+        for (;;) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    tasks.lazySet(index, task);
+                    // Volatile store so the publish is visible before the sleeping check.
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private Runnable poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+
+        Runnable task = tasks.get(index);
+        tasks.lazySet(index, null);
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return task;
+    }
+
+    private void run() {
+        try {
+            while (!shutdownNow) {
+                int ran = 0;
+                Runnable task;
+                while (ran < batchSize && (task = poll()) != null) {
+                    runTask(task);
+                    ran++;
+                }
+
+                // Move any tasks the executor thread queued for itself into the ring
+                // now that there may be space, preserving their order.
+                while (!overflow.isEmpty() && offer(overflow.peek())) {
+                    overflow.poll();
+                }
+
+                if (ran > 0) {
+                    if (isEmpty()) {
+                        fireIdle();
+                    }
+                    continue;
+                }
+
+                if (shutdown) {
+                    break;
+                }
+
+                awaitWork();
+            }
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    private boolean isEmpty() {
+        return overflow.isEmpty() && sequences.get((int) head & mask) != head + 1;
+    }
+
+    private void awaitWork() {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                sleeping = true;
+                if (isEmpty() && !shutdown) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+                break;
+        }
+    }
+
+    private int waitFor(int tries) {
+        if (tries < SPIN_TRIES) {
+            return tries + 1;
+        }
+
+        // Submitters never spin indefinitely, doing so could starve the executor thread
+        // of the CPU it needs to make space.
+        if (waitStrategy == WaitStrategy.BLOCK) {
+            LockSupport.parkNanos(1000);
+        } else {
+            Thread.yield();
+        }
+
+        return tries;
+    }
+
+    private void wake() {
+        Thread current = thread;
+        if (current != null) {
+            sleeping = false;
+            LockSupport.unpark(current);
+        }
+    }
+
+    private void ensureStarted() {
+        if (thread == null) {
+            synchronized (this) {
+                if (thread == null && !shutdown) {
+                    Thread worker = threadFactory.newThread(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            RingBufferExecutor.this.run();
+                        }
+                    });
+                    thread = worker;
+                    worker.start();
+                }
+            }
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable error) {
+            LOG.warn("Task failed with uncaught exception: {}", error.getMessage());
+            LOG.trace("Error detail: ", error);
+        }
+    }
+
+    private void fireIdle() {
+        try {
+            onIdle();
+        } catch (Throwable error) {
+            LOG.debug("Caught exception from idle processing: {}", error.getMessage());
+        }
+    }
+}
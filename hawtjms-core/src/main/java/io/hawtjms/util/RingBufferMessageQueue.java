@@ -0,0 +1,332 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import io.hawtjms.jms.message.JmsInboundMessageDispatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * First in / first out Message Queue backed by a bounded array ring buffer.
+ *
+ * The enqueue side is lock-free, it writes the next slot and publishes the new tail without
+ * taking the queue lock, so the provider thread never contends with a consumer that is busy
+ * reading messages.  Callers of {@link #enqueue(JmsInboundMessageDispatch)} must be serialized,
+ * which the {@link io.hawtjms.jms.JmsMessageConsumer} already does.  Readers take the queue
+ * lock among themselves, it is only shared with the producer when a reader is waiting on an
+ * empty queue or when the ring is full and new messages are held in an overflow list.
+ */
+public final class RingBufferMessageQueue implements MessageQueue {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Object lock = new Object();
+    private final int mask;
+    private final AtomicReferenceArray<JmsInboundMessageDispatch> ring;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // Guarded by lock, messages returned to the front of the queue and those that
+    // arrived while the ring was full.
+    private final LinkedList<JmsInboundMessageDispatch> front = new LinkedList<JmsInboundMessageDispatch>();
+    private final LinkedList<JmsInboundMessageDispatch> overflow = new LinkedList<JmsInboundMessageDispatch>();
+
+    private volatile boolean overflowing;
+    private volatile int waiters;
+    private volatile boolean running;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new queue with the default capacity.
+     */
+    public RingBufferMessageQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity
+     *        the number of slots in the ring, rounded up to a power of two.
+     */
+    public RingBufferMessageQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Ring capacity must be at least 1");
+        }
+
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+
+        this.mask = size - 1;
+        this.ring = new AtomicReferenceArray<JmsInboundMessageDispatch>(size);
+    }
+
+    @Override
+    public void enqueue(JmsInboundMessageDispatch envelope) {
+        if (overflowing || !offer(envelope)) {
+            synchronized (lock) {
+                // The reader may have emptied the overflow list since we looked.
+                if (overflowing || !offer(envelope)) {
+                    overflowing = true;
+                    overflow.addLast(envelope);
+                }
+                lock.notify();
+            }
+        } else if (waiters != 0) {
+            synchronized (lock) {
+                lock.notify();
+            }
+        }
+    }
+
+    @Override
+    public void enqueueFirst(JmsInboundMessageDispatch envelope) {
+        synchronized (lock) {
+            front.addFirst(envelope);
+            lock.notify();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (head.get() != tail.get() || overflowing) {
+            return false;
+        }
+
+        synchronized (lock) {
+            return isEmptyLocked();
+        }
+    }
+
+    @Override
+    public JmsInboundMessageDispatch peek() {
+        synchronized (lock) {
+            if (!front.isEmpty()) {
+                return front.peekFirst();
+            }
+
+            long position = head.get();
+            if (position != tail.get()) {
+                return ring.get((int) position & mask);
+            }
+
+            return overflow.peekFirst();
+        }
+    }
+
+    @Override
+    public JmsInboundMessageDispatch dequeue(long timeout) throws InterruptedException {
+        synchronized (lock) {
+            awaitMessages(timeout);
+
+            if (closed || !running) {
+                return null;
+            }
+
+            return poll();
+        }
+    }
+
+    @Override
+    public List<JmsInboundMessageDispatch> dequeue(int maxMessages, long timeout) throws InterruptedException {
+        synchronized (lock) {
+            awaitMessages(timeout);
+
+            if (closed || !running || isEmptyLocked()) {
+                return Collections.emptyList();
+            }
+
+            List<JmsInboundMessageDispatch> rc = new ArrayList<JmsInboundMessageDispatch>(Math.min(maxMessages, size()));
+            JmsInboundMessageDispatch entry;
+            while (rc.size() < maxMessages && (entry = poll()) != null) {
+                rc.add(entry);
+            }
+            return rc;
+        }
+    }
+
+    @Override
+    public JmsInboundMessageDispatch dequeueNoWait() {
+        synchronized (lock) {
+            if (closed || !running) {
+                return null;
+            }
+
+            return poll();
+        }
+    }
+
+    @Override
+    public void start() {
+        synchronized (lock) {
+            running = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (!closed) {
+                running = false;
+                closed = true;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int size() {
+        synchronized (lock) {
+            return (int) (tail.get() - head.get()) + front.size() + overflow.size();
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            while (poll() != null) {
+            }
+        }
+    }
+
+    @Override
+    public List<JmsInboundMessageDispatch> removeAll() {
+        synchronized (lock) {
+            ArrayList<JmsInboundMessageDispatch> rc = new ArrayList<JmsInboundMessageDispatch>(size());
+            JmsInboundMessageDispatch entry;
+            while ((entry = poll()) != null) {
+                rc.add(entry);
+            }
+            return rc;
+        }
+    }
+
+    @Override
+    public Object getLock() {
+        return lock;
+    }
+
+    /**
+     * @return the number of slots in the ring.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "RingBufferMessageQueue { size = " + size() + " }";
+    }
+
+    //---------- Ring buffer implementation ----------------------------------//
+
+    /*
+     * Called only by the producer, the tail store is volatile so that it is ordered
+     * before the read of the waiters count in enqueue.
+     */
+    private boolean offer(JmsInboundMessageDispatch envelope) {
+        long position = tail.get();
+        if (position - head.get() > mask) {
+            return false;
+        }
+
+        ring.lazySet((int) position & mask, envelope);
+        tail.set(position + 1);
+        return true;
+    }
+
+    /*
+     * Called under lock, messages in the overflow list are always newer than those
+     * in the ring since the producer stops writing to the ring once it overflows.
+     */
+    private JmsInboundMessageDispatch poll() {
+        if (!front.isEmpty()) {
+            return front.removeFirst();
+        }
+
+        long position = head.get();
+        if (position != tail.get()) {
+            int index = (int) position & mask;
+            JmsInboundMessageDispatch envelope = ring.get(index);
+            ring.lazySet(index, null);
+            head.lazySet(position + 1);
+            return envelope;
+        }
+
+        if (overflowing) {
+            JmsInboundMessageDispatch envelope = overflow.pollFirst();
+            if (overflow.isEmpty()) {
+                overflowing = false;
+            }
+            return envelope;
+        }
+
+        return null;
+    }
+
+    /*
+     * Called under lock, registering as a waiter before checking for messages ensures
+     * that the producer either sees us waiting or we see what it published.
+     */
+    private void awaitMessages(long timeout) throws InterruptedException {
+        waiters++;
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeout));
+            while (timeout != 0 && !closed && (!running || isEmptyLocked())) {
+                if (timeout == -1) {
+                    lock.wait();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            }
+        } finally {
+            waiters--;
+        }
+    }
+
+    private boolean isEmptyLocked() {
+        return front.isEmpty() && head.get() == tail.get() && !overflowing;
+    }
+}
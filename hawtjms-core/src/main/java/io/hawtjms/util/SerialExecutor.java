@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An Executor that runs its tasks one at a time and in submission order on the threads of
+ * another, usually shared, Executor.
+ *
+ * Many of these can share a small pool of threads while each still behaves as if it had a
+ * thread of its own.  At most one drain of the task queue is pending in the target Executor
+ * at any time, a drain runs up to a batch of tasks and then gives up its thread to any other
+ * work waiting in the pool before continuing.
+ *
+ * A SerialExecutor can be {@link #stop() stopped}, which holds back queued tasks and waits
+ * for a task that is already running to finish, and {@link #start() started} again to run
+ * whatever was held back.
+ */
+public final class SerialExecutor implements Executor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SerialExecutor.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final Executor target;
+    private final int batchSize;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile boolean stopped;
+    // Guarded by this, the thread currently running tasks from the queue.
+    private Thread drainThread;
+
+    private final Runnable drain = new Runnable() {
+
+        @Override
+        public void run() {
+            drainTasks();
+        }
+    };
+
+    /**
+     * Creates a new SerialExecutor with the default batch size.
+     *
+     * @param target
+     *        the Executor whose threads run the tasks.
+     */
+    public SerialExecutor(Executor target) {
+        this(target, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new SerialExecutor.
+     *
+     * @param target
+     *        the Executor whose threads run the tasks.
+     * @param batchSize
+     *        the maximum number of tasks run before the thread is given up.
+     */
+    public SerialExecutor(Executor target, int batchSize) {
+        this.target = target;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+
+        tasks.add(task);
+        if (!stopped) {
+            schedule();
+        }
+    }
+
+    /**
+     * Stops running tasks, those queued now or later are held until {@link #start()} is
+     * called.  Blocks until a task that is already running has finished unless called from
+     * that task, once this returns no task of this executor is running.
+     */
+    public void stop() {
+        stopped = true;
+        synchronized (this) {
+            while (drainThread != null && drainThread != Thread.currentThread()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resumes running tasks, including any that were held while stopped.
+     */
+    public void start() {
+        stopped = false;
+        if (!tasks.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * @return true if this executor has been stopped.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * @return the number of tasks waiting to run.
+     */
+    public int getPendingTasks() {
+        return tasks.size();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                target.execute(drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drainTasks() {
+        // Checked under lock so that stop() either sees this drain or the drain sees the stop.
+        boolean run;
+        synchronized (this) {
+            run = !stopped;
+            if (run) {
+                drainThread = Thread.currentThread();
+            }
+        }
+
+        if (run) {
+            try {
+                int count = 0;
+                Runnable task;
+                while (count < batchSize && !stopped && (task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (Throwable error) {
+                        LOG.debug("Serial task failed: {}", error.getMessage());
+                        LOG.trace("Error detail: ", error);
+                    }
+                    count++;
+                }
+            } finally {
+                synchronized (this) {
+                    drainThread = null;
+                    notifyAll();
+                }
+            }
+        }
+
+        scheduled.set(false);
+
+        // Tasks added while the flag was still set did not schedule a drain of their own.
+        if (!stopped && !tasks.isEmpty()) {
+            schedule();
+        }
+    }
+}
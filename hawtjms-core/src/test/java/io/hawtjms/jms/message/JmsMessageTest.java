@@ -19,7 +19,9 @@ package io.hawtjms.jms.message;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import io.hawtjms.jms.JmsDestination;
@@ -937,4 +939,91 @@ public class JmsMessageTest {
         msg.setJMSExpiration(System.currentTimeMillis() + 10000);
         assertFalse(msg.isExpired());
     }
+
+    @Test
+    public void testSharedMessageIsCopiedOnlyWhenChanged() throws JMSException {
+        JmsMessage msg = createReceivedMessage();
+        JmsInboundMessageDispatch envelope = new JmsInboundMessageDispatch();
+        envelope.setMessage(msg);
+
+        assertSame(msg, msg.share(envelope));
+        assertEquals("value", msg.getStringProperty("test"));
+        assertSame(msg, envelope.getMessage());
+
+        msg.clearProperties();
+        assertNotSame(msg, envelope.getMessage());
+        assertNull(msg.getStringProperty("test"));
+        assertEquals("value", envelope.getMessage().getStringProperty("test"));
+
+        // Once the envelope has its own copy further changes leave it alone.
+        JmsMessage copy = envelope.getMessage();
+        msg.setJMSType("changed");
+        assertSame(copy, envelope.getMessage());
+        assertNull(copy.getJMSType());
+    }
+
+    @Test
+    public void testHeaderChangeOnSharedMessageKeepsReceivedMessageId() throws JMSException {
+        JmsMessage msg = createReceivedMessage();
+        JmsInboundMessageDispatch envelope = new JmsInboundMessageDispatch();
+        envelope.setMessage(msg);
+        msg.share(envelope);
+
+        msg.setJMSMessageID("ID:RESENT:0:0:0:1");
+        assertEquals(jmsMessageID, envelope.getMessage().getJMSMessageID());
+        assertEquals("ID:RESENT:0:0:0:1", msg.getJMSMessageID());
+    }
+
+    @Test
+    public void testRedeliveryOfSharedMessageUsesCopy() throws JMSException {
+        JmsMessage msg = createReceivedMessage();
+        JmsInboundMessageDispatch envelope = new JmsInboundMessageDispatch();
+        envelope.setMessage(msg);
+        msg.share(envelope);
+
+        envelope.onMessageRedelivered();
+        assertNotSame(msg, envelope.getMessage());
+        assertFalse(msg.getJMSRedelivered());
+        assertTrue(envelope.getMessage().getJMSRedelivered());
+    }
+
+    @Test
+    public void testSharedMessageKeepsEnvelopeFacadeUntilChanged() throws JMSException {
+        JmsMessage msg = createReceivedMessage();
+        JmsMessageFacade received = msg.getFacade();
+        JmsInboundMessageDispatch envelope = new JmsInboundMessageDispatch();
+        envelope.setMessage(msg);
+
+        JmsMessage delivered = msg.share(envelope);
+        assertSame(received, delivered.getFacade());
+        assertSame(received, envelope.getMessage().getFacade());
+
+        // Reading the message does not copy it.
+        assertEquals(jmsMessageID, delivered.getJMSMessageID());
+        assertEquals("value", delivered.getStringProperty("test"));
+        assertSame(received, envelope.getMessage().getFacade());
+
+        // The first setter moves the envelope onto a copy and leaves the received state alone.
+        delivered.setJMSType("changed");
+        assertSame(received, delivered.getFacade());
+        assertNotSame(received, envelope.getMessage().getFacade());
+        assertEquals("changed", delivered.getJMSType());
+        assertNull(envelope.getMessage().getJMSType());
+
+        delivered.clearProperties();
+        delivered.setStringProperty("test", "other");
+        assertEquals("other", delivered.getStringProperty("test"));
+        assertEquals("value", envelope.getMessage().getStringProperty("test"));
+        assertEquals(jmsMessageID, envelope.getMessage().getJMSMessageID());
+    }
+
+    private JmsMessage createReceivedMessage() throws JMSException {
+        JmsMessage msg = factory.createMessage();
+        msg.setJMSMessageID(jmsMessageID);
+        msg.setJMSDestination(jmsDestination);
+        msg.setStringProperty("test", "value");
+        msg.setReadOnlyBody(true);
+        msg.setReadOnlyProperties(true);
+        return msg;
+    }
 }
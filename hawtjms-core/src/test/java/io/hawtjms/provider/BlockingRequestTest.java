@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.hawtjms.provider.BlockingRequest.WaitStrategy;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the reusable blocking request and its wait strategies.
+ */
+public class BlockingRequestTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlockingRequestTest.class);
+
+    private static final int ROUND_TRIPS = 20000;
+
+    @Test(timeout = 30000)
+    public void testCompletedFromAnotherThread() throws Exception {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            final BlockingRequest request = new BlockingRequest();
+            completeLater(request, null, 50);
+
+            request.await(strategy, 20);
+            assertTrue(request.isComplete());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testFailureIsRethrown() throws Exception {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            BlockingRequest request = new BlockingRequest();
+            completeLater(request, new IOException("failed"), 10);
+
+            try {
+                request.await(strategy, 20);
+                fail("Should have thrown the failure");
+            } catch (IOException e) {
+                assertEquals("failed", e.getMessage());
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testRequestCanBeReusedAfterReset() throws Exception {
+        BlockingRequest request = new BlockingRequest();
+        request.onFailure(new IOException("failed"));
+        assertTrue(request.isComplete());
+
+        request.reset();
+        assertFalse(request.isComplete());
+
+        request.onSuccess();
+        request.await(WaitStrategy.PARK, 0);
+        assertTrue(request.isComplete());
+    }
+
+    @Test(timeout = 30000)
+    public void testHandleCompletesOnlyOnce() throws Exception {
+        BlockingRequest request = new BlockingRequest();
+        AsyncResult<Void> handle = request.handle();
+
+        handle.onSuccess();
+        handle.onFailure(new IOException("late failure"));
+
+        assertTrue(handle.isComplete());
+        request.await(WaitStrategy.PARK, 0);
+    }
+
+    @Test(timeout = 30000)
+    public void testStaleHandleCannotCompleteReusedRequest() throws Exception {
+        BlockingRequest request = new BlockingRequest();
+        AsyncResult<Void> stale = request.handle();
+        stale.onSuccess();
+        request.await(WaitStrategy.PARK, 0);
+
+        request.reset();
+        AsyncResult<Void> current = request.handle();
+
+        // An answer for the earlier operation arriving after reuse must be ignored.
+        stale.onFailure(new IOException("belongs to another operation"));
+        assertFalse(request.isComplete());
+        assertFalse(current.isComplete());
+
+        current.onSuccess();
+        request.await(WaitStrategy.PARK, 0);
+        assertTrue(current.isComplete());
+    }
+
+    @Test(timeout = 30000)
+    public void testInterruptedWaitThrows() throws Exception {
+        final BlockingRequest request = new BlockingRequest();
+        final AtomicReference<Throwable> result = new AtomicReference<Throwable>();
+        Thread waiter = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    request.await(WaitStrategy.PARK, 0);
+                } catch (Throwable error) {
+                    result.set(error);
+                }
+            }
+        });
+
+        waiter.start();
+        TimeUnit.MILLISECONDS.sleep(100);
+        waiter.interrupt();
+        waiter.join(5000);
+
+        assertTrue(result.get() instanceof IOException);
+        assertFalse(request.isComplete());
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testRoundTripPerStrategy() throws Exception {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            doTestRoundTrip(strategy);
+        }
+    }
+
+    /**
+     * Passes a single reused request back and forth with a responder thread and reports the
+     * time and the bytes allocated by the waiting thread per round trip.
+     */
+    private void doTestRoundTrip(WaitStrategy strategy) throws Exception {
+        final BlockingRequest request = new BlockingRequest();
+        final AtomicReference<BlockingRequest> handoff = new AtomicReference<BlockingRequest>();
+        Thread responder = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < ROUND_TRIPS * 2; ++i) {
+                    BlockingRequest next;
+                    while ((next = handoff.getAndSet(null)) == null) {
+                        Thread.yield();
+                    }
+                    next.onSuccess();
+                }
+            }
+        });
+        responder.setDaemon(true);
+        responder.start();
+
+        // The first half warms up the code path.
+        for (int i = 0; i < ROUND_TRIPS; ++i) {
+            request.reset();
+            handoff.set(request);
+            request.await(strategy, 50);
+        }
+
+        long allocatedBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < ROUND_TRIPS; ++i) {
+            request.reset();
+            handoff.set(request);
+            request.await(strategy, 50);
+        }
+        long totalTime = System.nanoTime() - startTime;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        responder.join(10000);
+
+        LOG.info("{}: {} round trips, {} ns per round trip, {} bytes allocated per round trip", new Object[] {
+                 strategy, ROUND_TRIPS, totalTime / ROUND_TRIPS, allocated < 0 ? "n/a" : allocated / ROUND_TRIPS });
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+
+    private static void completeLater(final BlockingRequest request, final Throwable error, final long delay) {
+        Thread completer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                }
+
+                if (error != null) {
+                    request.onFailure(error);
+                } else {
+                    request.onSuccess();
+                }
+            }
+        });
+        completer.setDaemon(true);
+        completer.start();
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.hawtjms.transports.EventLoopTransport;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the serializer that runs on a Transport's event loop.
+ */
+public class TransportSerializerTest {
+
+    private ExecutorService eventLoop;
+    private Thread eventLoopThread;
+    private EventLoopTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        eventLoop = Executors.newSingleThreadExecutor();
+        eventLoopThread = eventLoop.submit(new Callable<Thread>() {
+
+            @Override
+            public Thread call() throws Exception {
+                return Thread.currentThread();
+            }
+        }).get();
+
+        transport = new EventLoopTransport() {
+
+            @Override
+            public void connect() {
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public void send(ByteBuffer output) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public boolean isInEventLoop() {
+                return Thread.currentThread() == eventLoopThread;
+            }
+
+            @Override
+            public void executeOnEventLoop(Runnable task) {
+                if (isInEventLoop()) {
+                    task.run();
+                } else {
+                    eventLoop.execute(task);
+                }
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        eventLoop.shutdownNow();
+    }
+
+    @Test(timeout = 30000)
+    public void testTasksRunOnEventLoopInOrder() throws Exception {
+        TransportSerializer serializer = new TransportSerializer(null);
+        serializer.bind(transport);
+
+        final List<Integer> results = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicReference<Thread> runner = new AtomicReference<Thread>();
+        final CountDownLatch done = new CountDownLatch(1000);
+
+        for (int i = 0; i < 1000; ++i) {
+            final int value = i;
+            serializer.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    runner.set(Thread.currentThread());
+                    results.add(value);
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertSame(eventLoopThread, runner.get());
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(Integer.valueOf(i), results.get(i));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testTaskFromEventLoopRunsImmediately() throws Exception {
+        final TransportSerializer serializer = new TransportSerializer(null);
+        serializer.bind(transport);
+
+        final List<String> results = new ArrayList<String>();
+        eventLoop.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                serializer.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        results.add("task");
+                    }
+                });
+                results.add("caller");
+            }
+        }).get();
+
+        assertEquals(Arrays.asList("task", "caller"), results);
+    }
+
+    @Test(timeout = 30000)
+    public void testTaskQueuedFromRunningTaskRunsAfterIt() throws Exception {
+        final TransportSerializer serializer = new TransportSerializer(null);
+        serializer.bind(transport);
+
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(1);
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                serializer.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        results.add("second");
+                        done.countDown();
+                    }
+                });
+                results.add("first");
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("first", "second"), results);
+    }
+
+    @Test(timeout = 30000)
+    public void testIdleTaskRunsAfterDrain() throws Exception {
+        final AtomicInteger idleCount = new AtomicInteger();
+        final CountDownLatch idle = new CountDownLatch(1);
+        TransportSerializer serializer = new TransportSerializer(new Runnable() {
+
+            @Override
+            public void run() {
+                idleCount.incrementAndGet();
+                idle.countDown();
+            }
+        });
+        serializer.bind(transport);
+
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        });
+
+        assertTrue(idle.await(10, TimeUnit.SECONDS));
+        assertTrue(idleCount.get() >= 1);
+    }
+
+    @Test(timeout = 30000)
+    public void testTasksRunOnCallerUntilBound() throws Exception {
+        TransportSerializer serializer = new TransportSerializer(null);
+
+        final AtomicReference<Thread> runner = new AtomicReference<Thread>();
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                runner.set(Thread.currentThread());
+            }
+        });
+
+        assertSame(Thread.currentThread(), runner.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testShutdownRejectsNewTasks() throws Exception {
+        TransportSerializer serializer = new TransportSerializer(null);
+        serializer.bind(transport);
+        serializer.shutdown();
+
+        assertTrue(serializer.isShutdown());
+        assertTrue(serializer.awaitTermination(10, TimeUnit.SECONDS));
+
+        try {
+            serializer.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                }
+            });
+            fail("Should not accept new tasks after shutdown");
+        } catch (RejectedExecutionException e) {
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+/**
+ * Tests for the Unix domain socket Transport against a simple echo server, the tests are
+ * skipped on runtimes older than Java 16 which lack Unix domain socket channels.
+ */
+public class NioUnixTransportTest {
+
+    private File socketFile;
+    private ServerSocketChannel server;
+    private Thread echoThread;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(isUnixDomainSocketSupported());
+
+        socketFile = File.createTempFile("hawtjms", ".sock");
+        socketFile.delete();
+
+        Class<?> protocolFamily = Class.forName("java.net.ProtocolFamily");
+        Object unix = Class.forName("java.net.StandardProtocolFamily").getField("UNIX").get(null);
+        Method open = ServerSocketChannel.class.getMethod("open", protocolFamily);
+        Method address = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+
+        server = (ServerSocketChannel) open.invoke(null, unix);
+        server.bind((SocketAddress) address.invoke(null, socketFile.getAbsolutePath()));
+
+        echoThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                echo();
+            }
+        }, "Unix socket echo server");
+        echoThread.setDaemon(true);
+        echoThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+        if (echoThread != null) {
+            echoThread.join(5000);
+        }
+        if (socketFile != null) {
+            socketFile.delete();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testConnectSendAndReceive() throws Exception {
+        final byte[] payload = new byte[64 * 1024];
+        for (int i = 0; i < payload.length; ++i) {
+            payload[i] = (byte) i;
+        }
+
+        EchoListener listener = new EchoListener(payload.length);
+        NioUnixTransport transport = new NioUnixTransport(listener, new URI("amqp+unix://" + socketFile.getAbsolutePath()));
+        listener.transport = transport;
+
+        transport.connect();
+        try {
+            transport.send(ByteBuffer.wrap(payload, 0, payload.length / 2));
+            transport.send(ByteBuffer.wrap(payload, payload.length / 2, payload.length / 2));
+            transport.flush();
+
+            assertTrue("Did not receive the echoed data", listener.done.await(20, TimeUnit.SECONDS));
+            if (listener.error.get() != null) {
+                fail("Transport reported an error: " + listener.error.get());
+            }
+            assertArrayEquals(payload, listener.received.toByteArray());
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testConnectToMissingSocketFails() throws Exception {
+        File missing = new File(socketFile.getAbsolutePath() + ".missing");
+        NioUnixTransport transport = new NioUnixTransport(new EchoListener(0), new URI("amqp+unix://" + missing.getAbsolutePath()));
+
+        try {
+            transport.connect();
+            fail("Should not be able to connect to a missing socket file");
+        } catch (IOException expected) {
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testConnectWithoutPathFails() throws Exception {
+        NioUnixTransport transport = new NioUnixTransport(new EchoListener(0), new URI("amqp+unix://localhost"));
+
+        try {
+            transport.connect();
+            fail("Should not be able to connect without a socket path");
+        } catch (IOException expected) {
+            assertEquals("No socket path given in URI: amqp+unix://localhost", expected.getMessage());
+        } finally {
+            transport.close();
+        }
+    }
+
+    private void echo() {
+        try {
+            while (server.isOpen()) {
+                SocketChannel client = server.accept();
+                try {
+                    ByteBuffer buffer = ByteBuffer.allocate(4096);
+                    while (client.read(buffer) >= 0) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            client.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                } finally {
+                    client.close();
+                }
+            }
+        } catch (IOException e) {
+            // Server closed at the end of the test.
+        }
+    }
+
+    private static boolean isUnixDomainSocketSupported() {
+        try {
+            Class.forName("java.net.UnixDomainSocketAddress");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static class EchoListener implements NioTransportListener {
+
+        private final int expected;
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        private NioUnixTransport transport;
+
+        public EchoListener(int expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        public void onReadReady() {
+            try {
+                int bytesRead = 0;
+                do {
+                    buffer.clear();
+                    bytesRead = transport.read(buffer);
+                    if (bytesRead > 0) {
+                        received.write(buffer.array(), 0, bytesRead);
+                    }
+                } while (bytesRead > 0);
+
+                if (received.size() >= expected) {
+                    done.countDown();
+                } else if (bytesRead == 0) {
+                    transport.readComplete();
+                }
+            } catch (IOException e) {
+                onTransportError(e);
+            }
+        }
+
+        @Override
+        public void onData(Buffer incoming) {
+        }
+
+        @Override
+        public void onTransportClosed() {
+            done.countDown();
+        }
+
+        @Override
+        public void onTransportError(Throwable cause) {
+            error.compareAndSet(null, cause);
+            done.countDown();
+        }
+
+        @Override
+        public void onTransportWriteQueueFull() {
+        }
+
+        @Override
+        public void onTransportWriteQueueDrained() {
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the hashed wheel timer used to expire Provider requests.
+ */
+public class HashedWheelTimerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HashedWheelTimerTest.class);
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runner) {
+                Thread thread = new Thread(runner, "HashedWheelTimerTest");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, 10, TimeUnit.MILLISECONDS, 64);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void testTimeoutExpiresAfterDelay() throws Exception {
+        final CountDownLatch expired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(new Runnable() {
+
+            @Override
+            public void run() {
+                expired.countDown();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(expired.await(10, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        assertTrue(timeout.isExpired());
+        assertEquals(1, timer.getExpiredTimeouts());
+        assertEquals(0, timer.getPendingTimeouts());
+    }
+
+    @Test(timeout = 30000)
+    public void testTimeoutBeyondOneRotationExpires() throws Exception {
+        final CountDownLatch expired = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        // The wheel covers 640ms so this timeout needs more than one rotation.
+        timer.newTimeout(new Runnable() {
+
+            @Override
+            public void run() {
+                expired.countDown();
+            }
+        }, 1500, TimeUnit.MILLISECONDS);
+
+        assertTrue(expired.await(10, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1500);
+    }
+
+    @Test(timeout = 30000)
+    public void testCancelledTimeoutDoesNotExpire() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(new Runnable() {
+
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, timer.getPendingTimeouts());
+
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(0, count.get());
+        assertEquals(0, timer.getExpiredTimeouts());
+    }
+
+    @Test(timeout = 60000)
+    public void testManyTimeoutsMostlyCancelled() throws Exception {
+        final int count = 200000;
+        final CountDownLatch expired = new CountDownLatch(count / 2);
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                expired.countDown();
+            }
+        };
+
+        HashedWheelTimer.Timeout[] timeouts = new HashedWheelTimer.Timeout[count];
+        long start = System.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            timeouts[i] = timer.newTimeout(task, 2000 + (i % 1000), TimeUnit.MILLISECONDS);
+        }
+        long scheduled = System.nanoTime() - start;
+
+        for (int i = 0; i < count; i += 2) {
+            timeouts[i].cancel();
+        }
+
+        LOG.info("Scheduled {} timeouts in {} ms", count, TimeUnit.NANOSECONDS.toMillis(scheduled));
+
+        assertTrue(expired.await(30, TimeUnit.SECONDS));
+        assertEquals(count / 2, timer.getExpiredTimeouts());
+        assertEquals(0, timer.getPendingTimeouts());
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for the MemoryGovernor that caps message bytes held across connections.
+ */
+public class MemoryGovernorTest {
+
+    @Test
+    public void testUsageIsTrackedPerAccountAndInTotal() {
+        MemoryGovernor governor = new MemoryGovernor(1000);
+        MemoryGovernor.Account first = governor.createAccount("first");
+        MemoryGovernor.Account second = governor.createAccount("second");
+
+        first.reserve(100);
+        second.reserve(300);
+        first.release(40);
+
+        assertEquals(60, first.getUsage());
+        assertEquals(300, second.getUsage());
+        assertEquals(360, governor.getUsage());
+        assertEquals(2, governor.getAccounts().size());
+    }
+
+    @Test
+    public void testThrottlesAtHighWatermark() {
+        MemoryGovernor governor = new MemoryGovernor(1000, 50);
+        MemoryGovernor.Account account = governor.createAccount("test");
+
+        account.reserve(499);
+        assertFalse(account.isThrottling());
+        account.reserve(1);
+        assertTrue(account.isThrottling());
+        account.release(1);
+        assertFalse(governor.isThrottling());
+    }
+
+    @Test
+    public void testCloseGivesBackUsage() {
+        MemoryGovernor governor = new MemoryGovernor(1000);
+        MemoryGovernor.Account account = governor.createAccount("test");
+
+        account.reserve(950);
+        assertTrue(governor.isThrottling());
+        account.close();
+
+        assertEquals(0, governor.getUsage());
+        assertTrue(governor.getAccounts().isEmpty());
+
+        // Late releases from the closed connection must not drive the total negative.
+        account.release(100);
+        assertEquals(0, governor.getUsage());
+    }
+
+    @Test(timeout = 60000)
+    public void testAwaitCapacityTimesOut() throws Exception {
+        MemoryGovernor governor = new MemoryGovernor(1000);
+        MemoryGovernor.Account account = governor.createAccount("test");
+
+        assertTrue(account.awaitCapacity(10));
+        account.reserve(1000);
+        assertFalse(account.awaitCapacity(10));
+    }
+
+    @Test(timeout = 60000)
+    public void testReleaseWakesWaitingProducer() throws Exception {
+        MemoryGovernor governor = new MemoryGovernor(1000);
+        final MemoryGovernor.Account producer = governor.createAccount("producer");
+        MemoryGovernor.Account consumer = governor.createAccount("consumer");
+
+        consumer.reserve(1000);
+
+        final CountDownLatch resumed = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (producer.awaitCapacity(-1)) {
+                        resumed.countDown();
+                    }
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        waiter.start();
+
+        assertFalse(resumed.await(50, TimeUnit.MILLISECONDS));
+        consumer.release(500);
+        assertTrue(resumed.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.message.JmsDefaultMessageFactory;
+import io.hawtjms.jms.message.JmsInboundMessageDispatch;
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsMessageFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the priority ordered Message Queue.
+ */
+public class PriorityMessageQueueTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PriorityMessageQueueTest.class);
+
+    private static final int OPERATIONS = 1000000;
+    private static final int BATCH_SIZE = 100;
+
+    private final JmsMessageFactory factory = new JmsDefaultMessageFactory();
+
+    @Test
+    public void testHighestPriorityIsReturnedFirst() {
+        PriorityMessageQueue queue = new PriorityMessageQueue();
+        queue.start();
+
+        JmsInboundMessageDispatch low = createEnvelope(1);
+        JmsInboundMessageDispatch normal = createEnvelope(4);
+        JmsInboundMessageDispatch high = createEnvelope(9);
+
+        queue.enqueue(low);
+        queue.enqueue(normal);
+        queue.enqueue(high);
+        assertEquals(3, queue.size());
+
+        assertSame(high, queue.peek());
+        assertSame(high, queue.dequeueNoWait());
+        assertSame(normal, queue.dequeueNoWait());
+        assertSame(low, queue.dequeueNoWait());
+        assertNull(queue.dequeueNoWait());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testOrderWithinPriorityIsKeptPastInitialCapacity() {
+        PriorityMessageQueue queue = new PriorityMessageQueue();
+        queue.start();
+
+        JmsInboundMessageDispatch[] envelopes = new JmsInboundMessageDispatch[100];
+        for (int i = 0; i < envelopes.length; ++i) {
+            envelopes[i] = createEnvelope(5);
+            queue.enqueue(envelopes[i]);
+
+            // Move the ring start around so that growing has to unwrap it.
+            if (i == 10) {
+                assertSame(envelopes[0], queue.dequeueNoWait());
+                queue.enqueueFirst(envelopes[0]);
+            }
+        }
+
+        for (int i = 0; i < envelopes.length; ++i) {
+            assertSame(envelopes[i], queue.dequeueNoWait());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testEnqueueFirstAndRemoveAll() {
+        PriorityMessageQueue queue = new PriorityMessageQueue();
+        queue.start();
+
+        JmsInboundMessageDispatch first = createEnvelope(4);
+        JmsInboundMessageDispatch second = createEnvelope(4);
+        JmsInboundMessageDispatch urgent = createEnvelope(8);
+        JmsInboundMessageDispatch noMessage = new JmsInboundMessageDispatch();
+
+        queue.enqueue(second);
+        queue.enqueue(noMessage);
+        queue.enqueueFirst(first);
+        queue.enqueue(urgent);
+
+        List<JmsInboundMessageDispatch> drained = queue.removeAll();
+        assertEquals(4, drained.size());
+        assertSame(urgent, drained.get(0));
+        assertSame(first, drained.get(1));
+        assertSame(second, drained.get(2));
+        assertSame(noMessage, drained.get(3));
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+
+        queue.enqueue(createEnvelope(2));
+        queue.enqueue(createEnvelope(7));
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+    }
+
+    @Test(timeout = 120000)
+    public void testMixedPriorityEnqueueDequeue() throws Exception {
+        JmsInboundMessageDispatch[] envelopes = new JmsInboundMessageDispatch[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; ++i) {
+            envelopes[i] = createEnvelope((i * 7) % 10);
+        }
+
+        doTestMixedPriority(new FifoMessageQueue(), envelopes);
+        doTestMixedPriority(new PriorityMessageQueue(), envelopes);
+
+        for (int i = 0; i < 3; ++i) {
+            doTestMixedPriority(new FifoMessageQueue(), envelopes);
+            doTestMixedPriority(new PriorityMessageQueue(), envelopes);
+        }
+    }
+
+    private void doTestMixedPriority(MessageQueue queue, JmsInboundMessageDispatch[] envelopes) {
+        queue.start();
+
+        // Fill once so any growth happens before measuring.
+        for (JmsInboundMessageDispatch envelope : envelopes) {
+            queue.enqueue(envelope);
+        }
+        queue.clear();
+
+        long allocatedBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < OPERATIONS / BATCH_SIZE; ++i) {
+            for (JmsInboundMessageDispatch envelope : envelopes) {
+                queue.enqueue(envelope);
+            }
+            for (int j = 0; j < BATCH_SIZE; ++j) {
+                queue.dequeueNoWait();
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        assertTrue(queue.isEmpty());
+        LOG.info("{}: {} ns per enqueue/dequeue pair, {} bytes allocated per message", new Object[] {
+                 queue.getClass().getSimpleName(), elapsed / OPERATIONS, allocated / OPERATIONS });
+    }
+
+    private JmsInboundMessageDispatch createEnvelope(int priority) {
+        JmsMessage message = factory.createMessage();
+        message.setJMSPriority(priority);
+        JmsInboundMessageDispatch envelope = new JmsInboundMessageDispatch();
+        envelope.setMessage(message);
+        return envelope;
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return 0;
+    }
+}
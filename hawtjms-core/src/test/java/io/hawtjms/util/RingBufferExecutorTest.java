@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.hawtjms.util.RingBufferExecutor.WaitStrategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the ring buffer based serializer.
+ */
+public class RingBufferExecutorTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RingBufferExecutorTest.class);
+
+    private final ThreadFactory threadFactory = new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runner) {
+            Thread thread = new Thread(runner, "RingBufferExecutorTest");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    @Test(timeout = 30000)
+    public void testTasksFromOneThreadRunInOrder() throws Exception {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            RingBufferExecutor executor = new RingBufferExecutor(threadFactory, 8, strategy, 4);
+            final List<Integer> results = Collections.synchronizedList(new ArrayList<Integer>());
+            final CountDownLatch done = new CountDownLatch(1000);
+
+            for (int i = 0; i < 1000; ++i) {
+                final int value = i;
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        results.add(value);
+                        done.countDown();
+                    }
+                });
+            }
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 1000; ++i) {
+                assertEquals(Integer.valueOf(i), results.get(i));
+            }
+
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testManyProducersAllTasksRun() throws Exception {
+        final RingBufferExecutor executor = new RingBufferExecutor(threadFactory, 16, WaitStrategy.BLOCK, 8);
+        final int PRODUCERS = 8;
+        final int TASKS = 10000;
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(PRODUCERS * TASKS);
+
+        for (int p = 0; p < PRODUCERS; ++p) {
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < TASKS; ++i) {
+                        executor.execute(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                count.incrementAndGet();
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        assertEquals(PRODUCERS * TASKS, count.get());
+        executor.shutdown();
+    }
+
+    @Test(timeout = 30000)
+    public void testExecutorThreadCanSubmitWhenRingIsFull() throws Exception {
+        final RingBufferExecutor executor = new RingBufferExecutor(threadFactory, 2, WaitStrategy.BLOCK, 1);
+        final CountDownLatch done = new CountDownLatch(100);
+
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; ++i) {
+                    executor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            done.countDown();
+                        }
+                    });
+                }
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test(timeout = 30000)
+    public void testIdleCalledAfterBurst() throws Exception {
+        final CountDownLatch idle = new CountDownLatch(1);
+        final AtomicInteger ran = new AtomicInteger();
+        RingBufferExecutor executor = new RingBufferExecutor(threadFactory) {
+
+            @Override
+            protected void onIdle() {
+                if (ran.get() == 10) {
+                    idle.countDown();
+                }
+            }
+        };
+
+        for (int i = 0; i < 10; ++i) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    ran.incrementAndGet();
+                }
+            });
+        }
+
+        assertTrue(idle.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test(timeout = 30000)
+    public void testShutdownRunsQueuedTasksThenRejects() throws Exception {
+        RingBufferExecutor executor = new RingBufferExecutor(threadFactory);
+        final AtomicInteger count = new AtomicInteger();
+
+        for (int i = 0; i < 100; ++i) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                }
+            });
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+        assertEquals(100, count.get());
+
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                }
+            });
+            fail("Should reject tasks after shutdown");
+        } catch (RejectedExecutionException e) {
+        }
+    }
+
+    @Test(timeout = 2 * 60 * 1000)
+    public void testContendedThroughputAgainstScheduledExecutor() throws Exception {
+        LOG.info("ScheduledThreadPoolExecutor: {} tasks/ms",
+                 measureThroughput(new ScheduledThreadPoolExecutor(1, threadFactory)));
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            LOG.info("RingBufferExecutor {}: {} tasks/ms", strategy,
+                     measureThroughput(new RingBufferExecutor(threadFactory, 1024, strategy, 64)));
+        }
+    }
+
+    private long measureThroughput(final ExecutorService executor) throws Exception {
+        final int PRODUCERS = 8;
+        final int TASKS = 100000;
+        final CountDownLatch done = new CountDownLatch(PRODUCERS * TASKS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+
+        for (int p = 0; p < PRODUCERS; ++p) {
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < TASKS; ++i) {
+                        executor.execute(task);
+                    }
+                }
+            }).start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        executor.shutdown();
+        return (PRODUCERS * TASKS) / elapsed;
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.message.JmsInboundMessageDispatch;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the ring buffer backed Message Queue.
+ */
+public class RingBufferMessageQueueTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RingBufferMessageQueueTest.class);
+
+    @Test
+    public void testCapacityIsRoundedToPowerOfTwo() {
+        assertEquals(2, new RingBufferMessageQueue(1).getCapacity());
+        assertEquals(8, new RingBufferMessageQueue(5).getCapacity());
+        assertEquals(1024, new RingBufferMessageQueue().getCapacity());
+    }
+
+    @Test
+    public void testMessagesAreReturnedInOrderPastCapacity() {
+        RingBufferMessageQueue queue = new RingBufferMessageQueue(4);
+        queue.start();
+
+        JmsInboundMessageDispatch[] envelopes = createEnvelopes(10);
+        for (JmsInboundMessageDispatch envelope : envelopes) {
+            queue.enqueue(envelope);
+        }
+        assertEquals(10, queue.size());
+
+        // Read part way into the overflow then add more, order must hold throughout.
+        for (int i = 0; i < 6; ++i) {
+            assertSame(envelopes[i], queue.dequeueNoWait());
+        }
+
+        JmsInboundMessageDispatch[] more = createEnvelopes(4);
+        for (JmsInboundMessageDispatch envelope : more) {
+            queue.enqueue(envelope);
+        }
+
+        for (int i = 6; i < 10; ++i) {
+            assertSame(envelopes[i], queue.dequeueNoWait());
+        }
+        for (int i = 0; i < 4; ++i) {
+            assertSame(more[i], queue.dequeueNoWait());
+        }
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.dequeueNoWait());
+    }
+
+    @Test
+    public void testEnqueueFirstIsReturnedBeforeQueuedMessages() {
+        RingBufferMessageQueue queue = new RingBufferMessageQueue(4);
+        queue.start();
+
+        JmsInboundMessageDispatch[] envelopes = createEnvelopes(3);
+        queue.enqueue(envelopes[1]);
+        queue.enqueue(envelopes[2]);
+        queue.enqueueFirst(envelopes[0]);
+
+        assertSame(envelopes[0], queue.peek());
+        List<JmsInboundMessageDispatch> drained = queue.removeAll();
+        assertEquals(3, drained.size());
+        for (int i = 0; i < 3; ++i) {
+            assertSame(envelopes[i], drained.get(i));
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testStoppedQueueReturnsNothing() throws Exception {
+        RingBufferMessageQueue queue = new RingBufferMessageQueue(4);
+        queue.enqueue(new JmsInboundMessageDispatch());
+
+        assertFalse(queue.isRunning());
+        assertNull(queue.dequeueNoWait());
+        assertNull(queue.dequeue(10));
+        assertFalse(queue.isEmpty());
+
+        queue.start();
+        assertTrue(queue.dequeue(10) != null);
+
+        queue.enqueue(new JmsInboundMessageDispatch());
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockedDequeueIsWokenByEnqueue() throws Exception {
+        final RingBufferMessageQueue queue = new RingBufferMessageQueue(4);
+        queue.start();
+
+        final JmsInboundMessageDispatch envelope = new JmsInboundMessageDispatch();
+        Thread producer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                queue.enqueue(envelope);
+            }
+        });
+        producer.start();
+
+        assertSame(envelope, queue.dequeue(-1));
+        producer.join();
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockedDequeueIsReleasedByClose() throws Exception {
+        final RingBufferMessageQueue queue = new RingBufferMessageQueue(4);
+        queue.start();
+
+        final AtomicReference<Object> result = new AtomicReference<Object>(this);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    result.set(queue.dequeue(-1));
+                } catch (InterruptedException e) {
+                }
+                done.countDown();
+            }
+        });
+        consumer.start();
+
+        Thread.sleep(50);
+        queue.close();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNull(result.get());
+        assertTrue(queue.isClosed());
+    }
+
+    @Test(timeout = 10000)
+    public void testTimedDequeueWaitsOutWakeUps() throws Exception {
+        doTestTimedDequeueWaitsOutWakeUps(new RingBufferMessageQueue(4));
+        doTestTimedDequeueWaitsOutWakeUps(new FifoMessageQueue());
+    }
+
+    private void doTestTimedDequeueWaitsOutWakeUps(final MessageQueue queue) throws Exception {
+        queue.start();
+
+        // Restarting a running queue wakes any waiters without giving them a message.
+        Thread waker = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < 5; ++i) {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                    }
+                    queue.start();
+                }
+            }
+        });
+        waker.start();
+
+        long startTime = System.nanoTime();
+        assertNull(queue.dequeue(300));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        waker.join();
+
+        assertTrue("Returned after only " + elapsed + " ms", elapsed >= 290);
+    }
+
+    @Test(timeout = 10000)
+    public void testBatchDequeue() throws Exception {
+        doTestBatchDequeue(new RingBufferMessageQueue(4));
+        doTestBatchDequeue(new FifoMessageQueue());
+    }
+
+    private void doTestBatchDequeue(MessageQueue queue) throws Exception {
+        queue.start();
+        assertTrue(queue.dequeue(5, 10).isEmpty());
+
+        JmsInboundMessageDispatch[] envelopes = createEnvelopes(7);
+        for (JmsInboundMessageDispatch envelope : envelopes) {
+            queue.enqueue(envelope);
+        }
+
+        List<JmsInboundMessageDispatch> batch = queue.dequeue(5, 0);
+        assertEquals(5, batch.size());
+        for (int i = 0; i < 5; ++i) {
+            assertSame(envelopes[i], batch.get(i));
+        }
+
+        // Only what is already queued is returned, the call does not wait to fill the batch.
+        batch = queue.dequeue(5, -1);
+        assertEquals(2, batch.size());
+        assertSame(envelopes[5], batch.get(0));
+        assertSame(envelopes[6], batch.get(1));
+        assertTrue(queue.isEmpty());
+
+        queue.enqueue(new JmsInboundMessageDispatch());
+        queue.stop();
+        assertTrue(queue.dequeue(5, 0).isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void testSingleProducerSingleConsumerOrdering() throws Exception {
+        RingBufferMessageQueue queue = new RingBufferMessageQueue(64);
+        JmsInboundMessageDispatch[] envelopes = createEnvelopes(100000);
+
+        long elapsed = doTestProducerConsumer(queue, envelopes);
+        assertTrue(queue.isEmpty());
+        LOG.info("Ring buffer queue moved {} messages in {} ms", envelopes.length, elapsed);
+    }
+
+    @Test(timeout = 120000)
+    public void testCompareThroughputWithFifoMessageQueue() throws Exception {
+        JmsInboundMessageDispatch[] envelopes = createEnvelopes(500000);
+
+        // Warm up both before timing.
+        doTestProducerConsumer(new FifoMessageQueue(), envelopes);
+        doTestProducerConsumer(new RingBufferMessageQueue(1000), envelopes);
+
+        long fifoTime = doTestProducerConsumer(new FifoMessageQueue(), envelopes);
+        long ringTime = doTestProducerConsumer(new RingBufferMessageQueue(1000), envelopes);
+
+        LOG.info("Moved {} messages: FifoMessageQueue {} ms, RingBufferMessageQueue {} ms",
+                 new Object[] { envelopes.length, fifoTime, ringTime });
+    }
+
+    private long doTestProducerConsumer(final MessageQueue queue, final JmsInboundMessageDispatch[] envelopes) throws Exception {
+        queue.start();
+
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread consumer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < envelopes.length; ++i) {
+                        JmsInboundMessageDispatch envelope = queue.dequeue(5000);
+                        if (envelope != envelopes[i]) {
+                            throw new AssertionError("Message " + i + " out of order");
+                        }
+                    }
+                } catch (Throwable error) {
+                    failure.set(error);
+                }
+            }
+        });
+
+        long startTime = System.nanoTime();
+        consumer.start();
+        for (JmsInboundMessageDispatch envelope : envelopes) {
+            queue.enqueue(envelope);
+        }
+        consumer.join();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        assertNull(failure.get());
+        return elapsed;
+    }
+
+    private JmsInboundMessageDispatch[] createEnvelopes(int count) {
+        JmsInboundMessageDispatch[] envelopes = new JmsInboundMessageDispatch[count];
+        for (int i = 0; i < count; ++i) {
+            envelopes[i] = new JmsInboundMessageDispatch();
+        }
+        return envelopes;
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the SerialExecutor used to share dispatch threads between Sessions.
+ */
+public class SerialExecutorTest {
+
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test(timeout = 60000)
+    public void testTasksRunInOrderOneAtATime() throws Exception {
+        final int strandCount = 200;
+        final int taskCount = 500;
+        final CountDownLatch done = new CountDownLatch(strandCount * taskCount);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+
+        List<SerialExecutor> strands = new ArrayList<SerialExecutor>();
+        final List<AtomicInteger> progress = new ArrayList<AtomicInteger>();
+        final List<AtomicBoolean> running = new ArrayList<AtomicBoolean>();
+        for (int i = 0; i < strandCount; ++i) {
+            strands.add(new SerialExecutor(pool, 8));
+            progress.add(new AtomicInteger());
+            running.add(new AtomicBoolean());
+        }
+
+        for (int task = 0; task < taskCount; ++task) {
+            for (int i = 0; i < strandCount; ++i) {
+                final int strand = i;
+                final int expected = task;
+                strands.get(i).execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (!running.get(strand).compareAndSet(false, true)) {
+                            failure.set("Strand " + strand + " ran two tasks at once");
+                        }
+                        if (progress.get(strand).getAndIncrement() != expected) {
+                            failure.set("Strand " + strand + " ran task " + expected + " out of order");
+                        }
+                        running.get(strand).set(false);
+                        done.countDown();
+                    }
+                });
+            }
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        for (SerialExecutor strand : strands) {
+            assertEquals(0, strand.getPendingTasks());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBatchGivesUpThreadToOtherStrands() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            SerialExecutor busy = new SerialExecutor(single, 2);
+            SerialExecutor other = new SerialExecutor(single, 2);
+
+            final List<String> order = new ArrayList<String>();
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(1);
+
+            // Hold the thread until both strands have queued their work.
+            single.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                    }
+                }
+            });
+
+            for (int i = 0; i < 4; ++i) {
+                busy.execute(recordingTask(order, "busy"));
+            }
+            other.execute(recordingTask(order, "other"));
+            other.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            assertEquals("busy", order.get(0));
+            assertEquals("busy", order.get(1));
+            assertEquals("other", order.get(2));
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailedTaskDoesNotStopLaterTasks() throws Exception {
+        SerialExecutor strand = new SerialExecutor(pool);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        strand.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                throw new RuntimeException("expected");
+            }
+        });
+        strand.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testRejectedDrainIsReported() throws Exception {
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+
+        SerialExecutor strand = new SerialExecutor(stopped);
+        try {
+            strand.execute(recordingTask(new ArrayList<String>(), "rejected"));
+            fail("Should have been rejected");
+        } catch (RejectedExecutionException e) {
+        }
+
+        assertEquals(1, strand.getPendingTasks());
+    }
+
+    @Test(timeout = 10000)
+    public void testStopWaitsForRunningTaskAndHoldsQueued() throws Exception {
+        final SerialExecutor strand = new SerialExecutor(pool);
+        final CountDownLatch taskStarted = new CountDownLatch(1);
+        final CountDownLatch releaseTask = new CountDownLatch(1);
+        final AtomicBoolean taskFinished = new AtomicBoolean();
+        final List<String> order = new ArrayList<String>();
+
+        strand.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                taskStarted.countDown();
+                try {
+                    releaseTask.await();
+                } catch (InterruptedException e) {
+                }
+                taskFinished.set(true);
+            }
+        });
+        strand.execute(recordingTask(order, "held"));
+
+        assertTrue(taskStarted.await(5, TimeUnit.SECONDS));
+
+        Thread releaser = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(100);
+                } catch (InterruptedException e) {
+                }
+                releaseTask.countDown();
+            }
+        });
+        releaser.start();
+
+        strand.stop();
+        assertTrue("Stop returned while a task was running", taskFinished.get());
+
+        strand.execute(recordingTask(order, "queued while stopped"));
+        TimeUnit.MILLISECONDS.sleep(100);
+        synchronized (order) {
+            assertTrue(order.isEmpty());
+        }
+        assertEquals(2, strand.getPendingTasks());
+
+        final CountDownLatch done = new CountDownLatch(1);
+        strand.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        strand.start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        synchronized (order) {
+            assertEquals(2, order.size());
+            assertEquals("held", order.get(0));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testStopFromRunningTaskDoesNotDeadlock() throws Exception {
+        final SerialExecutor strand = new SerialExecutor(pool);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        strand.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                strand.stop();
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(strand.isStopped());
+    }
+
+    private Runnable recordingTask(final List<String> order, final String name) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (order) {
+                    order.add(name);
+                }
+            }
+        };
+    }
+}
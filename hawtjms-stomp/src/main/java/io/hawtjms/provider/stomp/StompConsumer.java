@@ -35,10 +35,12 @@ import io.hawtjms.jms.meta.JmsSessionId;
 import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderListener;
+import io.hawtjms.provider.ProviderRequest;
 import io.hawtjms.provider.stomp.adapters.StompServerAdapter;
 
 import java.io.IOException;
 import java.util.LinkedList;
+import java.util.List;
 
 import javax.jms.JMSException;
 
@@ -145,6 +147,7 @@ public class StompConsumer {
         envelope.setConsumerId(consumerInfo.getConsumerId());
         envelope.setMessage(converted);
         envelope.setProviderHint(message);
+        envelope.setEncodedSize(message.getContent().length());
 
         connection.getProvider().getProviderListener().onMessage(envelope);
     }
@@ -228,6 +231,42 @@ public class StompConsumer {
         }
     }
 
+    /**
+     * Acknowledge a batch of messages delivered to this consumer.  The subscription uses
+     * the cumulative STOMP client ack mode so a consumed batch needs only a single ACK
+     * frame for its last message.
+     *
+     * @param envelopes
+     *        the envelopes of the messages being acknowledged, in delivery order.
+     * @param ackType
+     *        the type of acknowledge operation that should be performed.
+     * @param request
+     *        the asynchronous request awaiting completion of this operation.
+     *
+     * @throws IOException if an error occurs while writing the frame.
+     */
+    public void acknowledge(List<JmsInboundMessageDispatch> envelopes, ACK_TYPE ackType, AsyncResult<Void> request) throws IOException {
+        if (envelopes.isEmpty()) {
+            request.onSuccess();
+            return;
+        }
+
+        JmsInboundMessageDispatch last = envelopes.get(envelopes.size() - 1);
+        if (ackType.equals(ACK_TYPE.CONSUMED)) {
+            for (JmsInboundMessageDispatch envelope : envelopes) {
+                delivered.remove(envelope);
+            }
+            acknowledge(last, ackType, request);
+        } else {
+            for (JmsInboundMessageDispatch envelope : envelopes) {
+                if (envelope != last) {
+                    acknowledge(envelope, ackType, new ProviderRequest<Void>());
+                }
+            }
+            acknowledge(last, ackType, request);
+        }
+    }
+
     public JmsConsumerId getConsumerId() {
         return this.consumerInfo.getConsumerId();
     }
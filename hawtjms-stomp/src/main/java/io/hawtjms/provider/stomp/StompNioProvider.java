@@ -0,0 +1,44 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.stomp;
+
+import io.hawtjms.transports.NioTcpTransport;
+import io.hawtjms.transports.NioUnixTransport;
+import io.hawtjms.transports.Transport;
+
+import java.net.URI;
+
+/**
+ * StompProvider extension that uses the java.nio based Transport in place of Vert.x
+ *
+ * URIs using a +unix scheme connect over a Unix domain socket named by the URI path.
+ */
+public class StompNioProvider extends StompProvider {
+
+    public StompNioProvider(URI remoteURI) {
+        super(remoteURI);
+    }
+
+    @Override
+    protected Transport createTransport(URI remoteLocation) {
+        if (remoteLocation.getScheme().endsWith("+unix")) {
+            return new NioUnixTransport(this, remoteLocation);
+        }
+
+        return new NioTcpTransport(this, remoteLocation);
+    }
+}
@@ -35,13 +35,19 @@ import io.hawtjms.provider.AbstractAsyncProvider;
 import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderRequest;
+import io.hawtjms.transports.NioTcpTransport;
+import io.hawtjms.transports.NioTransportListener;
 import io.hawtjms.transports.TcpTransport;
 import io.hawtjms.transports.Transport;
-import io.hawtjms.transports.TransportListener;
+import io.netty.buffer.ByteBuf;
 
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import javax.jms.JMSException;
@@ -53,15 +59,19 @@ import org.vertx.java.core.buffer.Buffer;
 /**
  * Async Provider implementation for the STOMP protocol.
  */
-public class StompProvider extends AbstractAsyncProvider implements TransportListener {
+public class StompProvider extends AbstractAsyncProvider implements NioTransportListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(StompProvider.class);
 
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
     private final StompCodec codec = new StompCodec();
 
     private Transport transport;
     private StompConnection connection;
     private long closeTimeout = JmsConnectionInfo.DEFAULT_CLOSE_TIMEOUT;
+    private long sendTimeout = JmsConnectionInfo.DEFAULT_SEND_TIMEOUT;
+    private ByteBuffer readBuffer;
 
     public StompProvider(URI remoteURI) {
         super(remoteURI);
@@ -72,12 +82,15 @@ public class StompProvider extends AbstractAsyncProvider implements TransportLis
         checkClosed();
 
         transport = createTransport(getRemoteURI());
+        configureTransport(transport);
         transport.connect();
+        bindSerializer(transport);
     }
 
     @Override
     public void close() {
         if (closed.compareAndSet(false, true)) {
+            resumeSends();
             final ProviderRequest<Void> request = new ProviderRequest<Void>();
             serializer.execute(new Runnable() {
 
@@ -150,6 +163,8 @@ public class StompProvider extends AbstractAsyncProvider implements TransportLis
                         @Override
                         public void processConnectionInfo(JmsConnectionInfo connectionInfo) throws Exception {
                             closeTimeout = connectionInfo.getCloseTimeout();
+                            sendTimeout = connectionInfo.getSendTimeout();
+                            bindMemoryAccount(transport, connectionInfo.getMemoryAccount());
 
                             connection = new StompConnection(StompProvider.this, connectionInfo);
                             connection.connect(request);
@@ -262,6 +277,7 @@ public class StompProvider extends AbstractAsyncProvider implements TransportLis
     @Override
     public void send(final JmsOutboundMessageDispatch envelope, final AsyncResult<Void> request) throws IOException, JMSException {
         checkClosed();
+        awaitSendsResumed(sendTimeout);
         serializer.execute(new Runnable() {
 
             @Override
@@ -315,6 +331,49 @@ public class StompProvider extends AbstractAsyncProvider implements TransportLis
         });
     }
 
+    @Override
+    public void acknowledge(final List<JmsInboundMessageDispatch> envelopes, final ACK_TYPE ackType, final AsyncResult<Void> request) throws IOException {
+        checkClosed();
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    checkClosed();
+
+                    // Group by consumer so each subscription can ack its part of the batch at once.
+                    Map<JmsConsumerId, List<JmsInboundMessageDispatch>> byConsumer =
+                        new LinkedHashMap<JmsConsumerId, List<JmsInboundMessageDispatch>>();
+                    for (JmsInboundMessageDispatch envelope : envelopes) {
+                        List<JmsInboundMessageDispatch> group = byConsumer.get(envelope.getConsumerId());
+                        if (group == null) {
+                            group = new ArrayList<JmsInboundMessageDispatch>();
+                            byConsumer.put(envelope.getConsumerId(), group);
+                        }
+                        group.add(envelope);
+                    }
+
+                    if (byConsumer.isEmpty()) {
+                        request.onSuccess();
+                        return;
+                    }
+
+                    int remaining = byConsumer.size();
+                    for (Map.Entry<JmsConsumerId, List<JmsInboundMessageDispatch>> entry : byConsumer.entrySet()) {
+                        StompConsumer consumer = connection.getConsumer(entry.getKey());
+                        if (--remaining == 0) {
+                            consumer.acknowledge(entry.getValue(), ackType, request);
+                        } else {
+                            consumer.acknowledge(entry.getValue(), ackType, new FailureOnlyResult(request));
+                        }
+                    }
+                } catch (Exception error) {
+                    request.onFailure(error);
+                }
+            }
+        });
+    }
+
     @Override
     public void commit(final JmsSessionId sessionId, final AsyncResult<Void> request) throws IOException, JMSException, UnsupportedOperationException {
         checkClosed();
@@ -445,33 +504,108 @@ public class StompProvider extends AbstractAsyncProvider implements TransportLis
         transport.send(connect);
     }
 
+    @Override
+    protected void onSerializerIdle() {
+        if (transport != null && !closed.get()) {
+            try {
+                transport.flush();
+            } catch (IOException e) {
+                fireProviderException(e);
+            }
+        }
+    }
+
     @Override
     public void onData(Buffer incoming) {
-        // Create our own copy since we will process later.
-        final ByteBuffer source = ByteBuffer.wrap(incoming.getBytes());
+        // The event loop may release or reuse the received ByteBuf once this handler
+        // returns, we retain it until decoded so that we can work from a view of it
+        // rather than taking a copy first.
+        final ByteBuf received = incoming.getByteBuf().retain();
+        final ByteBuffer source = received.nioBuffer();
+
+        try {
+            serializer.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    LOG.trace("Received from Broker {} bytes:", source.remaining());
+
+                    try {
+                        processIncoming(source);
+                    } catch (Exception e) {
+                        LOG.warn("Caught exception while processing new data: {}", e.getMessage());
+                        LOG.trace("Exception detail: ", e);
+                        fireProviderException(e);
+                    } finally {
+                        received.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            received.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Callback from the NIO Transport indicating that data can be read, the data is read
+     * on the serializer thread into a reusable buffer and decoded from there.
+     */
+    @Override
+    public void onReadReady() {
+        final NioTcpTransport source = (NioTcpTransport) transport;
 
         serializer.execute(new Runnable() {
 
             @Override
             public void run() {
-                LOG.trace("Received from Broker {} bytes:", source.remaining());
-
                 try {
+                    if (readBuffer == null) {
+                        readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+                    }
+
+                    // The codec consumes all of the buffer and keeps any partial frame itself,
+                    // so clearing it leaves the whole buffer free for the next read.  A read
+                    // of zero bytes then always means the socket is empty and it is safe to
+                    // restore the read interest.
+                    int bytesRead = 0;
                     do {
-                        StompFrame frame = codec.decode(source);
-                        if (frame != null) {
-                            connection.processFrame(frame);
+                        readBuffer.clear();
+                        bytesRead = source.read(readBuffer);
+                        if (bytesRead > 0) {
+                            LOG.trace("Received from Broker {} bytes:", bytesRead);
+                            readBuffer.flip();
+                            processIncoming(readBuffer);
                         }
-                    } while (source.hasRemaining());
+                    } while (bytesRead > 0);
+
+                    if (bytesRead == 0) {
+                        source.readComplete();
+                    }
                 } catch (Exception e) {
-                    LOG.warn("Caught exception while processing new data: {}", e.getMessage());
-                    LOG.trace("Exception detail: ", e);
-                    fireProviderException(e);
+                    if (!closed.get()) {
+                        LOG.warn("Caught exception while processing new data: {}", e.getMessage());
+                        LOG.trace("Exception detail: ", e);
+                        fireProviderException(e);
+                    }
                 }
             }
         });
     }
 
+    /**
+     * Decodes and processes all the STOMP frames in the given buffer, the codec retains
+     * any partial frame so the buffer is fully consumed on return.
+     */
+    private void processIncoming(ByteBuffer source) throws Exception {
+        do {
+            StompFrame frame = codec.decode(source);
+            if (frame != null) {
+                connection.processFrame(frame);
+            }
+        } while (source.hasRemaining());
+    }
+
     /**
      * Callback method for the Transport to report connection errors.  When called
      * the method will queue a new task to fire the failure error back to the listener.
@@ -494,6 +628,25 @@ public class StompProvider extends AbstractAsyncProvider implements TransportLis
         }
     }
 
+    /**
+     * Callback method for the Transport to report that its write queue has filled, new
+     * send requests are held back on the sending thread until the queue drains.
+     */
+    @Override
+    public void onTransportWriteQueueFull() {
+        LOG.debug("Transport write queue full, pausing sends");
+        pauseSends();
+    }
+
+    /**
+     * Callback method for the Transport to report that its write queue has drained.
+     */
+    @Override
+    public void onTransportWriteQueueDrained() {
+        LOG.debug("Transport write queue drained, resuming sends");
+        resumeSends();
+    }
+
     /**
      * Callback method for the Transport to report that the underlying connection
      * has closed.  When called this method will queue a new task that will check for
@@ -532,4 +685,45 @@ public class StompProvider extends AbstractAsyncProvider implements TransportLis
     public void setCloseTimeout(long closeTimeout) {
         this.closeTimeout = closeTimeout;
     }
+
+    public long getSendTimeout() {
+        return this.sendTimeout;
+    }
+
+    public void setSendTimeout(long sendTimeout) {
+        this.sendTimeout = sendTimeout;
+    }
+
+    /**
+     * Used for all but the last part of a batch operation, errors are passed on to the
+     * batch request while success is left for the final part to signal.
+     */
+    private static final class FailureOnlyResult implements AsyncResult<Void> {
+
+        private final AsyncResult<Void> batch;
+
+        public FailureOnlyResult(AsyncResult<Void> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onFailure(Throwable result) {
+            if (!batch.isComplete()) {
+                batch.onFailure(result);
+            }
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+        }
+
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public boolean isComplete() {
+            return batch.isComplete();
+        }
+    }
 }
@@ -17,6 +17,7 @@
 package io.hawtjms.provider.stomp.adapters;
 
 import static io.hawtjms.provider.stomp.StompConstants.BROWSER;
+import static io.hawtjms.provider.stomp.StompConstants.CREDIT;
 import static io.hawtjms.provider.stomp.StompConstants.ID;
 import static io.hawtjms.provider.stomp.StompConstants.PERSISTENT;
 import static io.hawtjms.provider.stomp.StompConstants.TRUE;
@@ -69,6 +70,12 @@ public class ApolloServerAdaptor extends GenericStompServerAdaptor {
         if (consumerInfo.isBrowser()) {
             frame.setProperty(BROWSER, TRUE);
         }
+
+        // Apollo enforces a byte window alongside the message window on client ack
+        // subscriptions, returning credit for both as messages are acknowledged.
+        if (consumerInfo.getMaxPrefetchBytes() > 0 && consumerInfo.getPrefetchSize() > 0) {
+            frame.setProperty(CREDIT, consumerInfo.getPrefetchSize() + "," + consumerInfo.getMaxPrefetchBytes());
+        }
     }
 
     @Override
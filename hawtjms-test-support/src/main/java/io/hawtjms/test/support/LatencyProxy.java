@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.test.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A simple TCP proxy that delays all data passing through it in order to simulate
+ * a network with a given round trip time.  Half the round trip is added in each
+ * direction, data is delayed but not throttled so bandwidth is unaffected.
+ */
+public class LatencyProxy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LatencyProxy.class);
+
+    private final URI target;
+    private final long oneWayDelayNanos;
+    private final ServerSocket acceptor;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<Socket>();
+
+    /**
+     * Creates and starts a proxy for the given target.
+     *
+     * @param target
+     *        the URI whose host and port all accepted connections are forwarded to.
+     * @param roundTripMillis
+     *        the round trip time to simulate.
+     *
+     * @throws IOException if the proxy cannot listen for connections.
+     */
+    public LatencyProxy(URI target, long roundTripMillis) throws IOException {
+        this.target = target;
+        this.oneWayDelayNanos = TimeUnit.MILLISECONDS.toNanos(roundTripMillis) / 2;
+        this.acceptor = new ServerSocket(0);
+
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "LatencyProxy acceptor: " + acceptor.getLocalPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the target URI rewritten to connect through this proxy.
+     *
+     * @return a URI with the same scheme as the target that points at this proxy.
+     *
+     * @throws Exception if the URI cannot be created.
+     */
+    public URI getProxyURI() throws Exception {
+        return new URI(target.getScheme() + "://127.0.0.1:" + acceptor.getLocalPort());
+    }
+
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            closeQuietly(acceptor);
+            for (Socket socket : sockets) {
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void accept() {
+        while (!closed.get()) {
+            try {
+                Socket client = acceptor.accept();
+                Socket remote = new Socket();
+                remote.connect(new InetSocketAddress(target.getHost(), target.getPort()));
+                client.setTcpNoDelay(true);
+                remote.setTcpNoDelay(true);
+                sockets.add(client);
+                sockets.add(remote);
+
+                startPump(client, remote);
+                startPump(remote, client);
+            } catch (IOException e) {
+                if (!closed.get()) {
+                    LOG.warn("LatencyProxy failed to accept connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void startPump(final Socket from, final Socket to) throws IOException {
+        final InputStream in = from.getInputStream();
+        final OutputStream out = to.getOutputStream();
+        final LinkedBlockingQueue<Chunk> chunks = new LinkedBlockingQueue<Chunk>();
+
+        Thread reader = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                byte[] buffer = new byte[64 * 1024];
+                try {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        byte[] data = new byte[read];
+                        System.arraycopy(buffer, 0, data, 0, read);
+                        chunks.add(new Chunk(System.nanoTime() + oneWayDelayNanos, data));
+                    }
+                } catch (IOException e) {
+                    LOG.trace("LatencyProxy reader stopped: {}", e.getMessage());
+                }
+                chunks.add(Chunk.END);
+            }
+        }, "LatencyProxy reader: " + from.getPort());
+
+        Thread writer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Chunk chunk = chunks.take();
+                        if (chunk == Chunk.END) {
+                            break;
+                        }
+
+                        long wait = chunk.deadline - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        out.write(chunk.data);
+                        out.flush();
+                    }
+                } catch (Exception e) {
+                    LOG.trace("LatencyProxy writer stopped: {}", e.getMessage());
+                }
+
+                closeQuietly(from);
+                closeQuietly(to);
+            }
+        }, "LatencyProxy writer: " + to.getPort());
+
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+    }
+
+    private static void closeQuietly(Object closable) {
+        try {
+            if (closable instanceof Socket) {
+                ((Socket) closable).close();
+            } else if (closable instanceof ServerSocket) {
+                ((ServerSocket) closable).close();
+            }
+        } catch (IOException e) {
+        }
+    }
+
+    private static final class Chunk {
+
+        static final Chunk END = new Chunk(0, null);
+
+        final long deadline;
+        final byte[] data;
+
+        Chunk(long deadline, byte[] data) {
+            this.deadline = deadline;
+            this.data = data;
+        }
+    }
+}